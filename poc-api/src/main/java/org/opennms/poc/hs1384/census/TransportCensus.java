@@ -0,0 +1,284 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.census;
+
+import org.opennms.poc.hs1384.journal.LifecycleEvent;
+import org.opennms.poc.hs1384.journal.LifecycleJournal;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live census of the transports (TCP connections) opened by this process: open/close counts, an age histogram of the
+ *  live transports, a lifetime histogram of the closed ones, and live counts per remote address.  Replaces watching
+ *  netstat, with exact counts that can be sampled at any rate.
+ *
+ * Opens and closes are also appended to a {@link LifecycleJournal}, if one is set.
+ *
+ * Thread-safe; {@link #opened} and {@link Transport#closed()} are cheap enough to call from event loops.
+ */
+public class TransportCensus {
+
+    /**
+     * Upper bounds (exclusive) of the age histogram buckets; the last bucket holds everything older.
+     */
+    public static final long[] AGE_BUCKET_BOUNDS_MS = { 100, 1_000, 10_000, 60_000, 600_000, 3_600_000 };
+
+    private final String name;
+    private final Set<Transport> live = ConcurrentHashMap.newKeySet();
+    // Entries are removed when their count drops to 0, so addresses seen once don't accumulate
+    private final Map<String, Integer> liveByRemoteAddress = new ConcurrentHashMap<>();
+    private final LongAdder openedCount = new LongAdder();
+    private final LongAdder closedCount = new LongAdder();
+    private final LongAdder[] closedLifetimeHistogram = new LongAdder[AGE_BUCKET_BOUNDS_MS.length + 1];
+    private final AtomicLong nextTransportId = new AtomicLong(1);
+
+    private volatile LifecycleJournal journal = LifecycleJournal.disabled();
+
+    public TransportCensus(String name) {
+        this.name = name;
+
+        for (int cur = 0; cur < closedLifetimeHistogram.length; cur++) {
+            closedLifetimeHistogram[cur] = new LongAdder();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setJournal(LifecycleJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Record a newly connected transport.
+     *
+     * @param remoteAddress key used for the per-remote-address counts, e.g. {@link #hostOf} on a server or
+     *  {@link #hostAndPortOf} on a client.
+     * @return handle to close the transport with.
+     */
+    public Transport opened(String remoteAddress) {
+        return opened(remoteAddress, null, null);
+    }
+
+    /**
+     * Record a newly connected transport, journaled with its socket's ports.
+     *
+     * @param localSocketAddress local end of the socket; null if unknown.
+     * @param remoteSocketAddress remote end of the socket; null if unknown.
+     */
+    public Transport opened(String remoteAddress, SocketAddress localSocketAddress, SocketAddress remoteSocketAddress) {
+        Transport transport = new Transport(
+                nextTransportId.getAndIncrement(), remoteAddress, LifecycleJournal.portOf(localSocketAddress), LifecycleJournal.portOf(remoteSocketAddress));
+
+        live.add(transport);
+        liveByRemoteAddress.merge(remoteAddress, 1, Integer::sum);
+        openedCount.increment();
+        journal.record(LifecycleEvent.SOCKET_OPEN, transport.id, transport.localPort, transport.remotePort, 0, remoteAddress);
+
+        return transport;
+    }
+
+    public int getLiveCount() {
+        return live.size();
+    }
+
+    public Snapshot snapshot() {
+        long now = System.nanoTime();
+
+        long[] liveAgeHistogram = new long[AGE_BUCKET_BOUNDS_MS.length + 1];
+        for (Transport transport : live) {
+            liveAgeHistogram[bucketOf(now - transport.openedNanos)]++;
+        }
+
+        long[] closedLifetimes = new long[closedLifetimeHistogram.length];
+        for (int cur = 0; cur < closedLifetimes.length; cur++) {
+            closedLifetimes[cur] = closedLifetimeHistogram[cur].sum();
+        }
+
+        Map<String, Integer> byRemoteAddress = new TreeMap<>(liveByRemoteAddress);
+
+        // Read closed before opened, so a racing open/close never shows more closed than opened
+        long closed = closedCount.sum();
+        long opened = openedCount.sum();
+
+        return new Snapshot(System.currentTimeMillis(), opened, closed, live.size(), liveAgeHistogram, closedLifetimes, byRemoteAddress);
+    }
+
+    public static String hostOf(SocketAddress address) {
+        if (address instanceof InetSocketAddress inetAddress) {
+            return inetAddress.getHostString();
+        }
+
+        return String.valueOf(address);
+    }
+
+    public static String hostAndPortOf(SocketAddress address) {
+        if (address instanceof InetSocketAddress inetAddress) {
+            return inetAddress.getHostString() + ":" + inetAddress.getPort();
+        }
+
+        return String.valueOf(address);
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private static int bucketOf(long ageNanos) {
+        long ageMs = TimeUnit.NANOSECONDS.toMillis(ageNanos);
+
+        int bucket = 0;
+        while ((bucket < AGE_BUCKET_BOUNDS_MS.length) && (ageMs >= AGE_BUCKET_BOUNDS_MS[bucket])) {
+            bucket++;
+        }
+
+        return bucket;
+    }
+
+    private static String bucketLabel(int bucket) {
+        if (bucket < AGE_BUCKET_BOUNDS_MS.length) {
+            return "lt" + AGE_BUCKET_BOUNDS_MS[bucket] + "ms";
+        }
+
+        return "ge" + AGE_BUCKET_BOUNDS_MS[AGE_BUCKET_BOUNDS_MS.length - 1] + "ms";
+    }
+
+    public final class Transport {
+        private final long id;
+        private final String remoteAddress;
+        private final int localPort;
+        private final int remotePort;
+        private final long openedNanos = System.nanoTime();
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        private Transport(long id, String remoteAddress, int localPort, int remotePort) {
+            this.id = id;
+            this.remoteAddress = remoteAddress;
+            this.localPort = localPort;
+            this.remotePort = remotePort;
+        }
+
+        /**
+         * @return id of the transport within its census, as recorded in the journal.
+         */
+        public long getId() {
+            return id;
+        }
+
+        public String getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        /**
+         * Record the transport as closed; calls after the first are ignored.
+         */
+        public void closed() {
+            if (closed.compareAndSet(false, true)) {
+                live.remove(this);
+                liveByRemoteAddress.computeIfPresent(remoteAddress, (key, count) -> (count > 1) ? (count - 1) : null);
+                long lifetimeNanos = System.nanoTime() - openedNanos;
+                closedLifetimeHistogram[bucketOf(lifetimeNanos)].increment();
+                closedCount.increment();
+                journal.record(LifecycleEvent.SOCKET_CLOSE, id, localPort, remotePort, lifetimeNanos, remoteAddress);
+            }
+        }
+    }
+
+    public record Snapshot(long timestampMillis, long opened, long closed, int live, long[] liveAgeHistogram,
+                           long[] closedLifetimeHistogram, Map<String, Integer> liveByRemoteAddress) {
+
+        public static String csvHeader() {
+            StringBuilder header = new StringBuilder("timestamp_ms,opened,closed,live");
+            for (int cur = 0; cur <= AGE_BUCKET_BOUNDS_MS.length; cur++) {
+                header.append(",live_age_").append(bucketLabel(cur));
+            }
+            for (int cur = 0; cur <= AGE_BUCKET_BOUNDS_MS.length; cur++) {
+                header.append(",closed_lifetime_").append(bucketLabel(cur));
+            }
+            header.append(",live_by_remote_address");
+
+            return header.toString();
+        }
+
+        /**
+         * @return the snapshot as one CSV row; the per-remote-address counts are a single "address=count;..." column.
+         */
+        public String toCsvRow() {
+            StringBuilder row = new StringBuilder();
+            row.append(timestampMillis).append(',').append(opened).append(',').append(closed).append(',').append(live);
+            for (long count : liveAgeHistogram) {
+                row.append(',').append(count);
+            }
+            for (long count : closedLifetimeHistogram) {
+                row.append(',').append(count);
+            }
+
+            row.append(',');
+            String separator = "";
+            for (Map.Entry<String, Integer> entry : liveByRemoteAddress.entrySet()) {
+                row.append(separator).append(entry.getKey()).append('=').append(entry.getValue());
+                separator = ";";
+            }
+
+            return row.toString();
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Long> liveAges = new LinkedHashMap<>();
+            Map<String, Long> closedLifetimes = new LinkedHashMap<>();
+            for (int cur = 0; cur <= AGE_BUCKET_BOUNDS_MS.length; cur++) {
+                liveAges.put(bucketLabel(cur), liveAgeHistogram[cur]);
+                closedLifetimes.put(bucketLabel(cur), closedLifetimeHistogram[cur]);
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("timestampMs", timestampMillis);
+            result.put("opened", opened);
+            result.put("closed", closed);
+            result.put("live", live);
+            result.put("liveAge", liveAges);
+            result.put("closedLifetime", closedLifetimes);
+            result.put("liveByRemoteAddress", liveByRemoteAddress);
+
+            return result;
+        }
+    }
+}
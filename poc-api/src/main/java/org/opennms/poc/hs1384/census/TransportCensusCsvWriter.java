@@ -0,0 +1,121 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.census;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends a {@link TransportCensus} snapshot to a CSV file at a fixed period (sub-second periods are fine), giving an
+ *  exact time series for long-running leak tests.  The header is written when the file is new or empty.
+ */
+public class TransportCensusCsvWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransportCensusCsvWriter.class);
+
+    private final TransportCensus census;
+    private final Path path;
+    private final long periodMs;
+
+    private BufferedWriter writer;
+    private ScheduledExecutorService executor;
+
+    public TransportCensusCsvWriter(TransportCensus census, Path path, long periodMs) {
+        this.census = census;
+        this.path = path;
+        this.periodMs = periodMs;
+    }
+
+    public void start() throws IOException {
+        boolean needHeader = (! Files.exists(path)) || (Files.size(path) == 0);
+
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (needHeader) {
+            writer.write(TransportCensus.Snapshot.csvHeader());
+            writer.newLine();
+            writer.flush();
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "census-csv-" + census.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::writeSnapshot, 0, periodMs, TimeUnit.MILLISECONDS);
+
+        LOG.info("Writing {} transport census to {} every {}ms", census.getName(), path, periodMs);
+    }
+
+    public void shutdown() {
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException intExc) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Final sample, so the series ends at shutdown rather than up to one period before it
+        writeSnapshot();
+
+        try {
+            writer.close();
+        } catch (IOException ioExc) {
+            LOG.info("Failed to close census CSV {}", path, ioExc);
+        }
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private synchronized void writeSnapshot() {
+        try {
+            writer.write(census.snapshot().toCsvRow());
+            writer.newLine();
+            writer.flush();
+        } catch (IOException ioExc) {
+            LOG.warn("Failed to write census CSV {}", path, ioExc);
+        }
+    }
+}
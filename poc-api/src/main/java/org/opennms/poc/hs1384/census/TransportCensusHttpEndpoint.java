@@ -0,0 +1,127 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.census;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Minimal in-process HTTP endpoint for a {@link TransportCensus}, for processes without a web stack:
+ *
+ * <ul>
+ *     <li>GET /census - current snapshot as JSON</li>
+ *     <li>GET /census.csv - CSV header plus the current snapshot as one row</li>
+ * </ul>
+ *
+ * Served by the JDK's built-in HTTP server on a single daemon thread.
+ */
+public class TransportCensusHttpEndpoint {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransportCensusHttpEndpoint.class);
+
+    private final TransportCensus census;
+    private final int port;
+
+    private HttpServer httpServer;
+
+    public TransportCensusHttpEndpoint(TransportCensus census, int port) {
+        this.census = census;
+        this.port = port;
+    }
+
+    public void start() throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+        httpServer.createContext("/census", this::handleJson);
+        httpServer.createContext("/census.csv", this::handleCsv);
+        httpServer.setExecutor(null);
+        httpServer.start();
+
+        LOG.info("Serving {} transport census on http://localhost:{}/census", census.getName(), port);
+    }
+
+    public void shutdown() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void handleJson(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder();
+        appendJson(json, census.snapshot().toMap());
+
+        respond(exchange, "application/json", json.toString());
+    }
+
+    private void handleCsv(HttpExchange exchange) throws IOException {
+        respond(exchange, "text/csv", TransportCensus.Snapshot.csvHeader() + "\n" + census.snapshot().toCsvRow() + "\n");
+    }
+
+    private void respond(HttpExchange exchange, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    /**
+     * Just enough JSON for the snapshot map: nested maps, numbers, and strings (remote addresses need no escaping).
+     */
+    private void appendJson(StringBuilder json, Object value) {
+        if (value instanceof Map<?, ?> map) {
+            json.append('{');
+            String separator = "";
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                json.append(separator).append('"').append(entry.getKey()).append("\":");
+                appendJson(json, entry.getValue());
+                separator = ",";
+            }
+            json.append('}');
+        } else if (value instanceof Number) {
+            json.append(value);
+        } else {
+            json.append('"').append(value).append('"');
+        }
+    }
+}
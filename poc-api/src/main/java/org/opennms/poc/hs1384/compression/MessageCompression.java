@@ -0,0 +1,294 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.compression;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerStreamTracer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Message compression for one side of the Minion channel: the encoding of every call's outbound messages, skipped for
+ *  messages smaller than a threshold (heartbeats, acks), plus counters of the messages and bytes each way.
+ *
+ * Both registries always hold gzip and snappy, so either side can decode whatever the other sends, whatever its own
+ *  setting.  A server only compresses responses for clients that advertised the encoding (grpc-accept-encoding); a
+ *  client sends its encoding blindly and the call fails with UNIMPLEMENTED if the server does not know it.
+ *
+ * Install on a channel with {@link #getCompressorRegistry}, {@link #getDecompressorRegistry} and the interceptor;
+ *  on a server additionally with {@link #getServerStreamTracerFactory} (a client call gets its tracer from the
+ *  interceptor).
+ */
+public class MessageCompression implements ClientInterceptor, ServerInterceptor {
+
+    public enum Encoding {
+        IDENTITY(Codec.Identity.NONE),
+        GZIP(new Codec.Gzip()),
+        SNAPPY(new SnappyCodec());
+
+        private final Codec codec;
+
+        Encoding(Codec codec) {
+            this.codec = codec;
+        }
+
+        public Codec getCodec() {
+            return codec;
+        }
+
+        public String getMessageEncoding() {
+            return codec.getMessageEncoding();
+        }
+    }
+
+    private final Encoding encoding;
+    private final int minMessageBytes;
+
+    private final CompressorRegistry compressorRegistry = CompressorRegistry.newEmptyInstance();
+    private final DecompressorRegistry decompressorRegistry;
+
+    private final Counters outbound = new Counters();
+    private final Counters inbound = new Counters();
+
+    /**
+     * @param minMessageBytes outbound messages with a smaller serialized size are sent uncompressed.
+     */
+    public MessageCompression(Encoding encoding, int minMessageBytes) {
+        this.encoding = encoding;
+        this.minMessageBytes = minMessageBytes;
+
+        DecompressorRegistry decompressors = DecompressorRegistry.emptyInstance();
+        for (Encoding cur : Encoding.values()) {
+            compressorRegistry.register(cur.codec);
+            decompressors = decompressors.with(cur.codec, cur != Encoding.IDENTITY);
+        }
+        decompressorRegistry = decompressors;
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    public CompressorRegistry getCompressorRegistry() {
+        return compressorRegistry;
+    }
+
+    public DecompressorRegistry getDecompressorRegistry() {
+        return decompressorRegistry;
+    }
+
+    public ServerStreamTracer.Factory getServerStreamTracerFactory() {
+        return new ServerStreamTracer.Factory() {
+            @Override
+            public ServerStreamTracer newServerStreamTracer(String fullMethodName, Metadata headers) {
+                return new CountingServerStreamTracer();
+            }
+        };
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        CallOptions tracedOptions = callOptions.withStreamTracerFactory(new ClientStreamTracer.Factory() {
+            @Override
+            public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+                return new CountingClientStreamTracer();
+            }
+        });
+        if (encoding == Encoding.IDENTITY) {
+            return next.newCall(method, tracedOptions);
+        }
+
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, tracedOptions.withCompression(encoding.getMessageEncoding()))) {
+            @Override
+            public void sendMessage(ReqT message) {
+                setMessageCompression(shouldCompress(message));
+                super.sendMessage(message);
+            }
+        };
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        if (encoding == Encoding.IDENTITY) {
+            return next.startCall(call, headers);
+        }
+
+        call.setCompression(encoding.getMessageEncoding());
+
+        return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void sendMessage(RespT message) {
+                setMessageCompression(shouldCompress(message));
+                super.sendMessage(message);
+            }
+        }, headers);
+    }
+
+    /**
+     * Messages and bytes each way; wire bytes are the (possibly compressed) message bytes, without the gRPC and HTTP/2
+     *  framing.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("encoding", encoding.getMessageEncoding());
+        result.put("minMessageBytes", minMessageBytes);
+        result.put("outbound", outbound.toMap());
+        result.put("inbound", inbound.toMap());
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "encoding=" + encoding.getMessageEncoding() + " min-message-bytes=" + minMessageBytes + " outbound=[" + outbound + "] inbound=[" + inbound + "]";
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private boolean shouldCompress(Object message) {
+        return (! (message instanceof MessageLite messageLite)) || (messageLite.getSerializedSize() >= minMessageBytes);
+    }
+
+    private static class Counters {
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder uncompressedBytes = new LongAdder();
+        private final LongAdder wireBytes = new LongAdder();
+
+        private Map<String, Object> toMap() {
+            long messageCount = messages.sum();
+            long uncompressed = uncompressedBytes.sum();
+            long wire = wireBytes.sum();
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("messages", messageCount);
+            result.put("uncompressedBytes", uncompressed);
+            result.put("wireBytes", wire);
+            result.put("wireBytesPerMessage", (messageCount == 0) ? 0.0 : ((double) wire / (double) messageCount));
+            result.put("ratio", (uncompressed == 0) ? 1.0 : ((double) wire / (double) uncompressed));
+
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            Map<String, Object> stats = toMap();
+
+            return String.format("messages=%d uncompressed-bytes=%d wire-bytes=%d wire-bytes/message=%.1f ratio=%.3f",
+                    stats.get("messages"), stats.get("uncompressedBytes"), stats.get("wireBytes"),
+                    stats.get("wireBytesPerMessage"), stats.get("ratio"));
+        }
+    }
+
+    private class CountingClientStreamTracer extends ClientStreamTracer {
+        @Override
+        public void outboundMessage(int seqNo) {
+            outbound.messages.increment();
+        }
+
+        @Override
+        public void outboundUncompressedSize(long bytes) {
+            outbound.uncompressedBytes.add(bytes);
+        }
+
+        @Override
+        public void outboundWireSize(long bytes) {
+            outbound.wireBytes.add(bytes);
+        }
+
+        @Override
+        public void inboundMessage(int seqNo) {
+            inbound.messages.increment();
+        }
+
+        @Override
+        public void inboundUncompressedSize(long bytes) {
+            inbound.uncompressedBytes.add(bytes);
+        }
+
+        @Override
+        public void inboundWireSize(long bytes) {
+            inbound.wireBytes.add(bytes);
+        }
+    }
+
+    /**
+     * Same as {@link CountingClientStreamTracer}; the two tracer types share no base class beyond StreamTracer.
+     */
+    private class CountingServerStreamTracer extends ServerStreamTracer {
+        @Override
+        public void outboundMessage(int seqNo) {
+            outbound.messages.increment();
+        }
+
+        @Override
+        public void outboundUncompressedSize(long bytes) {
+            outbound.uncompressedBytes.add(bytes);
+        }
+
+        @Override
+        public void outboundWireSize(long bytes) {
+            outbound.wireBytes.add(bytes);
+        }
+
+        @Override
+        public void inboundMessage(int seqNo) {
+            inbound.messages.increment();
+        }
+
+        @Override
+        public void inboundUncompressedSize(long bytes) {
+            inbound.uncompressedBytes.add(bytes);
+        }
+
+        @Override
+        public void inboundWireSize(long bytes) {
+            inbound.wireBytes.add(bytes);
+        }
+    }
+}
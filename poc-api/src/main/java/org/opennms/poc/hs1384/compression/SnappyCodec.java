@@ -0,0 +1,194 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.compression;
+
+import io.grpc.Codec;
+import io.grpc.netty.shaded.io.netty.buffer.ByteBuf;
+import io.grpc.netty.shaded.io.netty.buffer.Unpooled;
+import io.grpc.netty.shaded.io.netty.handler.codec.compression.Snappy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Snappy message encoding, using the block codec bundled with (shaded) Netty so neither side needs a native library.
+ *  The message is cut into blocks of at most {@value #MAX_BLOCK_LENGTH} bytes -- the most Netty's encoder can address
+ *  -- and each block is written as its 4-byte compressed length followed by the Snappy block.
+ *
+ * This framing is not the Snappy framing format, so it is registered under the private encoding name
+ *  {@value #MESSAGE_ENCODING} rather than "snappy": only peers using this class advertise it, and gRPC's encoding
+ *  negotiation refuses it everywhere else.
+ *
+ * Decompression decodes one block at a time as the message is read, so no more than one block is inflated ahead of
+ *  gRPC's max-inbound-message-size check.
+ */
+public class SnappyCodec implements Codec {
+
+    public static final String MESSAGE_ENCODING = "x-snappy-block";
+
+    static final int MAX_BLOCK_LENGTH = Short.MAX_VALUE;
+
+    // Snappy's worst-case compressed size of a block
+    static final int MAX_COMPRESSED_BLOCK_LENGTH = 32 + MAX_BLOCK_LENGTH + (MAX_BLOCK_LENGTH / 6);
+
+    @Override
+    public String getMessageEncoding() {
+        return MESSAGE_ENCODING;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream os) {
+        return new ByteArrayOutputStream() {
+            @Override
+            public void close() throws IOException {
+                ByteBuf compressed = Unpooled.buffer((count / 2) + 16);
+                try {
+                    encode(Unpooled.wrappedBuffer(buf, 0, count), compressed);
+                    compressed.readBytes(os, compressed.readableBytes());
+                } finally {
+                    compressed.release();
+                }
+
+                os.close();
+            }
+        };
+    }
+
+    @Override
+    public InputStream decompress(InputStream is) {
+        return new BlockDecodingInputStream(is);
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void encode(ByteBuf in, ByteBuf out) {
+        Snappy snappy = new Snappy();
+        while (in.isReadable()) {
+            int blockLength = Math.min(in.readableBytes(), MAX_BLOCK_LENGTH);
+
+            int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            snappy.encode(in.readSlice(blockLength), out, blockLength);
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+        }
+    }
+
+    /**
+     * Reads the compressed blocks one at a time, each decoded into a buffer capped at {@value #MAX_BLOCK_LENGTH} bytes.
+     */
+    private static class BlockDecodingInputStream extends InputStream {
+        private final DataInputStream compressed;
+        private final Snappy snappy = new Snappy();
+        private final ByteBuf block = Unpooled.buffer(0, MAX_BLOCK_LENGTH);
+        private byte[] compressedBlock = new byte[0];
+        private boolean endOfStream;
+
+        private BlockDecodingInputStream(InputStream compressed) {
+            this.compressed = new DataInputStream(compressed);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (! fill()) {
+                return -1;
+            }
+
+            return block.readUnsignedByte();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (! fill()) {
+                return -1;
+            }
+
+            int count = Math.min(len, block.readableBytes());
+            block.readBytes(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return block.readableBytes();
+        }
+
+        @Override
+        public void close() throws IOException {
+            compressed.close();
+        }
+
+        /**
+         * @return true => the block buffer has bytes to read; false => end of the message.
+         */
+        private boolean fill() throws IOException {
+            while (! block.isReadable()) {
+                if (endOfStream) {
+                    return false;
+                }
+
+                int first = compressed.read();
+                if (first < 0) {
+                    endOfStream = true;
+                    return false;
+                }
+
+                int blockLength = (first << 24) | (compressed.readUnsignedByte() << 16) | compressed.readUnsignedShort();
+                if ((blockLength <= 0) || (blockLength > MAX_COMPRESSED_BLOCK_LENGTH)) {
+                    throw new IOException("Invalid snappy block length " + blockLength);
+                }
+
+                if (compressedBlock.length < blockLength) {
+                    compressedBlock = new byte[blockLength];
+                }
+                compressed.readFully(compressedBlock, 0, blockLength);
+
+                block.clear();
+                try {
+                    snappy.decode(Unpooled.wrappedBuffer(compressedBlock, 0, blockLength), block);
+                } catch (RuntimeException rtExc) {
+                    // Includes a block claiming to inflate beyond the block buffer's capacity
+                    throw new IOException("Invalid snappy block", rtExc);
+                } finally {
+                    snappy.reset();
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.journal;
+
+/**
+ * Events recorded in a {@link LifecycleJournal}.  Journals store the ordinal, so new events are only ever appended.
+ */
+public enum LifecycleEvent {
+    /** TCP connection established; connection id is the census transport id. */
+    SOCKET_OPEN,
+    /** TCP connection closed; value is its lifetime in ns. */
+    SOCKET_CLOSE,
+    /** Channel connectivity state changed; connection id is the channel's index, detail the new state. */
+    STATE_CHANGE,
+    /** Reconnect strategy polled the channel; value is the attempt number, detail the state it saw. */
+    RECONNECT_ATTEMPT,
+    /** Client considers itself connected and opened its streams. */
+    CONNECTED,
+    /** Client considers itself disconnected. */
+    DISCONNECTED,
+    /** Server sent a GOAWAY frame; connection id is the census transport id. */
+    GOAWAY_SENT
+}
@@ -0,0 +1,218 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Journal of connection lifecycle events in a memory-mapped ring file of fixed-size binary records, cheap enough to
+ *  leave on for overnight runs: an append claims a slot with one atomic increment and writes 64 bytes into the
+ *  mapping; the page cache does the I/O.  Once full, the oldest records are overwritten.
+ *
+ * Records carry System.nanoTime(); the header pairs it with the wall clock at open, so {@link LifecycleJournalReader}
+ *  can merge the journals of several processes on one host into a single timeline.
+ *
+ * Thread-safe.  A file left by a previous run is overwritten.
+ */
+public class LifecycleJournal implements Closeable {
+
+    public static final int MAGIC = 0x4C434A31;
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 64;
+    public static final int RECORD_BYTES = 64;
+    public static final int SOURCE_BYTES = 32;
+    public static final int DETAIL_BYTES = 20;
+
+    // Header layout
+    static final int HEADER_MAGIC = 0;
+    static final int HEADER_VERSION = 4;
+    static final int HEADER_RECORD_BYTES = 8;
+    static final int HEADER_CAPACITY = 12;
+    static final int HEADER_EPOCH_NANOS = 16;
+    static final int HEADER_NANO_TIME = 24;
+    static final int HEADER_SOURCE = 32;
+
+    // Record layout; sequence is stored + 1, so 0 marks a slot never (or not completely) written
+    static final int RECORD_SEQUENCE = 0;
+    static final int RECORD_NANO_TIME = 8;
+    static final int RECORD_CONNECTION_ID = 16;
+    static final int RECORD_VALUE = 24;
+    static final int RECORD_EVENT = 32;
+    static final int RECORD_LOCAL_PORT = 36;
+    static final int RECORD_REMOTE_PORT = 40;
+    static final int RECORD_DETAIL = 44;
+
+    private static final VarHandle SEQUENCE_HANDLE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final LifecycleJournal DISABLED = new LifecycleJournal(null, null, 0);
+
+    private final FileChannel fileChannel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final AtomicLong nextSequence = new AtomicLong(0);
+
+    private LifecycleJournal(FileChannel fileChannel, MappedByteBuffer buffer, int capacity) {
+        this.fileChannel = fileChannel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param source name of the writing side, e.g. "client" or "ctf-server"; truncated to {@value #SOURCE_BYTES} bytes.
+     * @param capacity number of records kept; the file is {@value #HEADER_BYTES} + capacity * {@value #RECORD_BYTES} bytes.
+     */
+    public static LifecycleJournal open(Path file, String source, int capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Journal capacity must be positive: " + capacity);
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        FileChannel fileChannel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * RECORD_BYTES);
+
+            Instant now = Instant.now();
+            buffer.putInt(HEADER_MAGIC, MAGIC);
+            buffer.putInt(HEADER_VERSION, VERSION);
+            buffer.putInt(HEADER_RECORD_BYTES, RECORD_BYTES);
+            buffer.putInt(HEADER_CAPACITY, capacity);
+            buffer.putLong(HEADER_EPOCH_NANOS, (now.getEpochSecond() * 1_000_000_000L) + now.getNano());
+            buffer.putLong(HEADER_NANO_TIME, System.nanoTime());
+            putAscii(buffer, HEADER_SOURCE, SOURCE_BYTES, source);
+
+            return new LifecycleJournal(fileChannel, buffer, capacity);
+        } catch (IOException | RuntimeException exc) {
+            fileChannel.close();
+            throw exc;
+        }
+    }
+
+    /**
+     * A journal that records nothing, for when journaling is off.
+     */
+    public static LifecycleJournal disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return buffer != null;
+    }
+
+    /**
+     * @return the number of records appended since open, including any that were overwritten since.
+     */
+    public long getRecordCount() {
+        return nextSequence.get();
+    }
+
+    /**
+     * @param detail short free text, e.g. a state name or address; truncated to {@value #DETAIL_BYTES} ASCII bytes.
+     */
+    public void record(LifecycleEvent event, long connectionId, int localPort, int remotePort, long value, String detail) {
+        if (buffer == null) {
+            return;
+        }
+
+        long nanoTime = System.nanoTime();
+        long sequence = nextSequence.getAndIncrement();
+        int offset = HEADER_BYTES + (int) (sequence % capacity) * RECORD_BYTES;
+
+        // Clear the sequence first, so a record torn by a crash reads as empty rather than as the one it replaced
+        buffer.putLong(offset + RECORD_SEQUENCE, 0);
+        buffer.putLong(offset + RECORD_NANO_TIME, nanoTime);
+        buffer.putLong(offset + RECORD_CONNECTION_ID, connectionId);
+        buffer.putLong(offset + RECORD_VALUE, value);
+        buffer.putInt(offset + RECORD_EVENT, event.ordinal());
+        buffer.putInt(offset + RECORD_LOCAL_PORT, localPort);
+        buffer.putInt(offset + RECORD_REMOTE_PORT, remotePort);
+        putAscii(buffer, offset + RECORD_DETAIL, DETAIL_BYTES, detail);
+        SEQUENCE_HANDLE.setRelease(buffer, offset + RECORD_SEQUENCE, sequence + 1);
+    }
+
+    public void record(LifecycleEvent event, long connectionId, long value, String detail) {
+        record(event, connectionId, 0, 0, value, detail);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            buffer.force();
+            fileChannel.close();
+        }
+    }
+
+    /**
+     * @return the port of an {@link InetSocketAddress}, otherwise 0.
+     */
+    public static int portOf(SocketAddress address) {
+        if (address instanceof InetSocketAddress inetAddress) {
+            return inetAddress.getPort();
+        }
+
+        return 0;
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    /**
+     * Write the text straight into the buffer, without an intermediate byte[]; non-ASCII characters become '?'.
+     */
+    private static void putAscii(ByteBuffer buffer, int offset, int length, String text) {
+        int count = (text == null) ? 0 : Math.min(text.length(), length);
+        for (int cur = 0; cur < count; cur++) {
+            char ch = text.charAt(cur);
+            buffer.put(offset + cur, (ch < 0x80) ? (byte) ch : (byte) '?');
+        }
+        for (int cur = count; cur < length; cur++) {
+            buffer.put(offset + cur, (byte) 0);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.journal;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Merges one or more {@link LifecycleJournal} files -- typically the client's and the CTF server's -- into a single
+ *  timeline on stdout, ordered by wall-clock time.  A client socket and the server's end of it show the same pair of
+ *  ports, reversed.
+ *
+ * Usage: java -cp POC-HS-1384-api.jar org.opennms.poc.hs1384.journal.LifecycleJournalReader &lt;journal-file&gt;...
+ */
+public class LifecycleJournalReader {
+
+    public static void main(String... args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: LifecycleJournalReader <journal-file>...");
+            System.exit(1);
+        }
+
+        List<Entry> timeline = new ArrayList<>();
+        for (String arg : args) {
+            timeline.addAll(read(Path.of(arg), System.out));
+        }
+
+        timeline.sort(Comparator.comparingLong(Entry::epochNanos).thenComparing(Entry::source).thenComparingLong(Entry::sequence));
+
+        long previousEpochNanos = timeline.isEmpty() ? 0 : timeline.get(0).epochNanos();
+        for (Entry entry : timeline) {
+            System.out.println(entry.format(entry.epochNanos() - previousEpochNanos));
+            previousEpochNanos = entry.epochNanos();
+        }
+    }
+
+    /**
+     * Read the complete records of a journal, oldest first, writing a one-line summary of the file to the given stream.
+     */
+    public static List<Entry> read(Path file, PrintStream summary) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+        }
+
+        if ((buffer.capacity() < LifecycleJournal.HEADER_BYTES) || (buffer.getInt(LifecycleJournal.HEADER_MAGIC) != LifecycleJournal.MAGIC)) {
+            throw new IOException("Not a lifecycle journal: " + file);
+        }
+        if ((buffer.getInt(LifecycleJournal.HEADER_VERSION) != LifecycleJournal.VERSION)
+                || (buffer.getInt(LifecycleJournal.HEADER_RECORD_BYTES) != LifecycleJournal.RECORD_BYTES)) {
+            throw new IOException("Unsupported lifecycle journal version " + buffer.getInt(LifecycleJournal.HEADER_VERSION) + ": " + file);
+        }
+
+        int capacity = buffer.getInt(LifecycleJournal.HEADER_CAPACITY);
+        if ((capacity <= 0) || (LifecycleJournal.HEADER_BYTES + (long) capacity * LifecycleJournal.RECORD_BYTES > buffer.capacity())) {
+            throw new IOException("Lifecycle journal capacity " + capacity + " does not fit the file size " + buffer.capacity() + ": " + file);
+        }
+
+        long baseEpochNanos = buffer.getLong(LifecycleJournal.HEADER_EPOCH_NANOS);
+        long baseNanoTime = buffer.getLong(LifecycleJournal.HEADER_NANO_TIME);
+        String source = getAscii(buffer, LifecycleJournal.HEADER_SOURCE, LifecycleJournal.SOURCE_BYTES);
+        LifecycleEvent[] events = LifecycleEvent.values();
+
+        List<Entry> entries = new ArrayList<>();
+        long highestSequence = -1;
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = LifecycleJournal.HEADER_BYTES + slot * LifecycleJournal.RECORD_BYTES;
+
+            long sequence = buffer.getLong(offset + LifecycleJournal.RECORD_SEQUENCE) - 1;
+            int eventOrdinal = buffer.getInt(offset + LifecycleJournal.RECORD_EVENT);
+            if ((sequence < 0) || (sequence % capacity != slot) || (eventOrdinal < 0) || (eventOrdinal >= events.length)) {
+                continue;
+            }
+
+            highestSequence = Math.max(highestSequence, sequence);
+            entries.add(new Entry(
+                    source,
+                    sequence,
+                    baseEpochNanos + (buffer.getLong(offset + LifecycleJournal.RECORD_NANO_TIME) - baseNanoTime),
+                    events[eventOrdinal],
+                    buffer.getLong(offset + LifecycleJournal.RECORD_CONNECTION_ID),
+                    buffer.getInt(offset + LifecycleJournal.RECORD_LOCAL_PORT),
+                    buffer.getInt(offset + LifecycleJournal.RECORD_REMOTE_PORT),
+                    buffer.getLong(offset + LifecycleJournal.RECORD_VALUE),
+                    getAscii(buffer, offset + LifecycleJournal.RECORD_DETAIL, LifecycleJournal.DETAIL_BYTES)
+            ));
+        }
+
+        entries.sort(Comparator.comparingLong(Entry::sequence));
+        summary.printf("# %s: %s, %d record(s) of %d written, %d overwritten%n",
+                source, file, entries.size(), highestSequence + 1, Math.max(0, highestSequence + 1 - capacity));
+
+        return entries;
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private static String getAscii(ByteBuffer buffer, int offset, int length) {
+        int count = 0;
+        while ((count < length) && (buffer.get(offset + count) != 0)) {
+            count++;
+        }
+
+        byte[] bytes = new byte[count];
+        buffer.get(offset, bytes);
+
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    public record Entry(String source, long sequence, long epochNanos, LifecycleEvent event, long connectionId,
+                        int localPort, int remotePort, long value, String detail) {
+
+        public Instant timestamp() {
+            return Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L), Math.floorMod(epochNanos, 1_000_000_000L));
+        }
+
+        /**
+         * @param sincePreviousNanos time since the previous entry of the timeline, shown next to the timestamp.
+         */
+        public String format(long sincePreviousNanos) {
+            StringBuilder line = new StringBuilder();
+            line.append(String.format("%-30s +%12.6fms  %-12s #%-8d %-17s conn=%-6d",
+                    timestamp(), sincePreviousNanos / 1_000_000.0, source, sequence, event, connectionId));
+            if ((localPort != 0) || (remotePort != 0)) {
+                line.append(" ports=").append(localPort).append("->").append(remotePort);
+            }
+            if (value != 0) {
+                line.append(" value=").append(value);
+            }
+            if (! detail.isEmpty()) {
+                line.append(' ').append(detail);
+            }
+
+            return line.toString();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.metrics;
+
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Terminal observer of one call: counts into its label's {@link StreamMetrics} and logs only the sampled messages and
+ *  errors (rate-limited, at WARN); completions are logged at DEBUG.  The periodic summary counts both.
+ *
+ * Like any StreamObserver, not thread-safe: gRPC serializes the callbacks of one call.
+ */
+public class MetricsStreamObserver<T> implements StreamObserver<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsStreamObserver.class);
+
+    private final StreamMetrics.Stats stats;
+    private final StreamMetrics metrics;
+    private final long startNanos = System.nanoTime();
+
+    private boolean firstMessageSeen;
+
+    MetricsStreamObserver(StreamMetrics.Stats stats, StreamMetrics metrics) {
+        this.stats = stats;
+        this.metrics = metrics;
+
+        stats.streams.increment();
+    }
+
+    @Override
+    public void onNext(T value) {
+        stats.messages.increment();
+        if (! firstMessageSeen) {
+            firstMessageSeen = true;
+            stats.recordLatency(System.nanoTime() - startNanos);
+        }
+
+        if (metrics.shouldSample()) {
+            LOG.info("STREAM {} SAMPLED VALUE: {}", stats.label, value);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        stats.errors.increment();
+        metrics.logError(stats, t);
+    }
+
+    @Override
+    public void onCompleted() {
+        stats.completed.increment();
+        LOG.debug("STREAM {} COMPLETED", stats.label);
+    }
+}
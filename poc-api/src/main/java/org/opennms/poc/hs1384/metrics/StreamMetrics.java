@@ -0,0 +1,229 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.metrics;
+
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics-first replacement for logging every message of a stream: per-label counters of streams, messages, errors
+ *  and completions, the message rate, and the latency from opening a stream (or sending a unary request) to its first
+ *  message.  A daemon timer logs one summary line per label and summary period, skipping labels with no activity
+ *  since their last summary, and {@link #close()} flushes the last interval.  Individual messages are only logged
+ *  (and formatted) for a random 1-in-sampleRate sample; errors are logged at WARN, at most one per label per second.
+ *
+ * Thread-safe and lock-free on the message path.
+ */
+public class StreamMetrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamMetrics.class);
+
+    private static final long ERROR_LOG_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int sampleRate;
+
+    private final Map<String, Stats> statsByLabel = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService summaryTimer;
+
+    /**
+     * @param sampleRate log one message in this many, at random; 0 => none.
+     * @param summaryPeriodMs ms between the summary lines of one label; 0 => no summary lines.
+     */
+    public StreamMetrics(int sampleRate, long summaryPeriodMs) {
+        this.sampleRate = sampleRate;
+
+        if (summaryPeriodMs > 0) {
+            summaryTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "stream-metrics-summary");
+                thread.setDaemon(true);
+                return thread;
+            });
+            summaryTimer.scheduleAtFixedRate(this::logSummaries, summaryPeriodMs, summaryPeriodMs, TimeUnit.MILLISECONDS);
+        } else {
+            summaryTimer = null;
+        }
+    }
+
+    /**
+     * Stop the summary timer and log the summary of the last interval for every label with activity in it.
+     */
+    public void close() {
+        if (summaryTimer == null) {
+            return;
+        }
+
+        summaryTimer.shutdown();
+        try {
+            summaryTimer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException intExc) {
+            Thread.currentThread().interrupt();
+        }
+
+        logSummaries();
+    }
+
+    /**
+     * Observer for one call; its latency is measured from now.
+     */
+    public <T> StreamObserver<T> observer(String label) {
+        return new MetricsStreamObserver<>(statsByLabel.computeIfAbsent(label, Stats::new), this);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new TreeMap<>();
+        statsByLabel.forEach((label, stats) -> result.put(label, stats.toMap()));
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        new TreeMap<>(statsByLabel).forEach((label, stats) -> result.append((result.length() == 0) ? "" : " ").append(label).append("=[").append(stats).append(']'));
+
+        return result.toString();
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    boolean shouldSample() {
+        return (sampleRate > 0) && LOG.isInfoEnabled() && (ThreadLocalRandom.current().nextInt(sampleRate) == 0);
+    }
+
+    void logError(Stats stats, Throwable t) {
+        long now = System.nanoTime();
+        long due = stats.nextErrorLogNanos.get();
+        if ((now - due >= 0) && stats.nextErrorLogNanos.compareAndSet(due, now + ERROR_LOG_PERIOD_NANOS)) {
+            LOG.warn("STREAM {} ERROR ({} more since the last one logged)", stats.label, stats.unloggedErrors.sumThenReset(), t);
+        } else {
+            stats.unloggedErrors.increment();
+        }
+    }
+
+    /**
+     * Only called from the summary timer, or by close() once the timer stopped.
+     */
+    private void logSummaries() {
+        long now = System.nanoTime();
+        statsByLabel.values().forEach(stats -> {
+            if (stats.hasActivitySinceSummary()) {
+                LOG.info("STREAM {} SUMMARY: {}", stats.label, stats.summarize(now));
+            }
+        });
+    }
+
+    final class Stats {
+        final String label;
+
+        final LongAdder streams = new LongAdder();
+        final LongAdder messages = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder completed = new LongAdder();
+        final LongAdder latencyCount = new LongAdder();
+        final LongAdder latencyNanos = new LongAdder();
+        final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+        private final AtomicLong nextErrorLogNanos = new AtomicLong(System.nanoTime());
+        private final LongAdder unloggedErrors = new LongAdder();
+
+        private long lastSummaryNanos;
+        private long lastSummaryMessages;
+        private long lastSummaryActivity;
+
+        private Stats(String label) {
+            this.label = label;
+
+            lastSummaryNanos = System.nanoTime();
+        }
+
+        void recordLatency(long nanos) {
+            latencyCount.increment();
+            latencyNanos.add(nanos);
+            maxLatencyNanos.accumulate(nanos);
+        }
+
+        private long activity() {
+            return streams.sum() + messages.sum() + errors.sum() + completed.sum();
+        }
+
+        private boolean hasActivitySinceSummary() {
+            return activity() != lastSummaryActivity;
+        }
+
+        private String summarize(long now) {
+            long messageCount = messages.sum();
+            double seconds = (double) (now - lastSummaryNanos) / 1_000_000_000.0;
+            double rate = (seconds > 0) ? ((double) (messageCount - lastSummaryMessages) / seconds) : 0.0;
+
+            lastSummaryNanos = now;
+            lastSummaryMessages = messageCount;
+            lastSummaryActivity = activity();
+
+            return toString() + String.format(" rate=%.1f/s", rate);
+        }
+
+        private Map<String, Object> toMap() {
+            long count = latencyCount.sum();
+
+            Map<String, Object> result = new TreeMap<>();
+            result.put("streams", streams.sum());
+            result.put("messages", messages.sum());
+            result.put("errors", errors.sum());
+            result.put("completed", completed.sum());
+            result.put("firstMessageLatencyMeanMillis", (count == 0) ? 0.0 : ((double) latencyNanos.sum() / (double) count / 1_000_000.0));
+            result.put("firstMessageLatencyMaxMillis", (double) maxLatencyNanos.get() / 1_000_000.0);
+
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            Map<String, Object> stats = toMap();
+
+            return String.format("streams=%d messages=%d errors=%d completed=%d first-message-latency-mean=%.3fms first-message-latency-max=%.3fms",
+                    stats.get("streams"), stats.get("messages"), stats.get("errors"), stats.get("completed"),
+                    stats.get("firstMessageLatencyMeanMillis"), stats.get("firstMessageLatencyMaxMillis"));
+        }
+    }
+}
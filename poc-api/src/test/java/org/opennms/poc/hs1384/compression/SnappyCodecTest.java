@@ -0,0 +1,159 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.compression;
+
+import io.grpc.netty.shaded.io.netty.buffer.ByteBuf;
+import io.grpc.netty.shaded.io.netty.buffer.Unpooled;
+import io.grpc.netty.shaded.io.netty.handler.codec.compression.Snappy;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SnappyCodecTest {
+
+    private final SnappyCodec codec = new SnappyCodec();
+
+    @Test
+    public void emptyMessageRoundTrips() throws IOException {
+        assertRoundTrip(0);
+    }
+
+    @Test
+    public void messageOfExactlyOneBlockRoundTrips() throws IOException {
+        assertRoundTrip(SnappyCodec.MAX_BLOCK_LENGTH);
+    }
+
+    @Test
+    public void messageOfOneBlockAndOneByteRoundTrips() throws IOException {
+        assertRoundTrip(SnappyCodec.MAX_BLOCK_LENGTH + 1);
+    }
+
+    @Test
+    public void oneMegabyteMessageRoundTrips() throws IOException {
+        assertRoundTrip(1024 * 1024);
+    }
+
+    @Test
+    public void oversizedBlockLengthIsRejected() {
+        byte[] compressed = ByteBuffer.allocate(4).putInt(SnappyCodec.MAX_COMPRESSED_BLOCK_LENGTH + 1).array();
+
+        assertThrows(IOException.class, () -> decompress(compressed));
+    }
+
+    @Test
+    public void negativeBlockLengthIsRejected() {
+        byte[] compressed = ByteBuffer.allocate(4).putInt(-1).array();
+
+        assertThrows(IOException.class, () -> decompress(compressed));
+    }
+
+    @Test
+    public void blockInflatingPastTheBufferIsRejected() {
+        // A valid Snappy block, but of one byte more than the decoder's block buffer holds
+        byte[] compressed = frame(snappyBlock(payload(SnappyCodec.MAX_BLOCK_LENGTH + 1)));
+
+        assertThrows(IOException.class, () -> decompress(compressed));
+    }
+
+    @Test
+    public void blockWhosePreambleClaimsTooMuchIsRejected() {
+        // Preamble: varint 100,000,000; then a 1-byte literal
+        byte[] block = { (byte) 0x80, (byte) 0xc2, (byte) 0xd7, 0x2f, 0x00, 'x' };
+
+        assertThrows(IOException.class, () -> decompress(frame(block)));
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void assertRoundTrip(int length) throws IOException {
+        byte[] message = payload(length);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream os = codec.compress(compressed)) {
+            os.write(message);
+        }
+
+        assertArrayEquals(message, decompress(compressed.toByteArray()));
+    }
+
+    private byte[] decompress(byte[] compressed) throws IOException {
+        try (InputStream is = codec.decompress(new ByteArrayInputStream(compressed))) {
+            return is.readAllBytes();
+        }
+    }
+
+    /**
+     * Half random bytes, half runs of one byte, so both literals and copies are exercised.
+     */
+    private static byte[] payload(int length) {
+        Random random = new Random(length);
+        byte[] payload = new byte[length];
+
+        int pos = 0;
+        while (pos < length) {
+            int run = Math.min(length - pos, 1 + random.nextInt(64));
+            if (random.nextBoolean()) {
+                byte[] literal = new byte[run];
+                random.nextBytes(literal);
+                System.arraycopy(literal, 0, payload, pos, run);
+            } else {
+                Arrays.fill(payload, pos, pos + run, (byte) random.nextInt());
+            }
+            pos += run;
+        }
+
+        return payload;
+    }
+
+    private static byte[] snappyBlock(byte[] uncompressed) {
+        ByteBuf out = Unpooled.buffer();
+        new Snappy().encode(Unpooled.wrappedBuffer(uncompressed), out, uncompressed.length);
+
+        byte[] block = new byte[out.readableBytes()];
+        out.readBytes(block);
+        return block;
+    }
+
+    private static byte[] frame(byte[] block) {
+        return ByteBuffer.allocate(4 + block.length).putInt(block.length).put(block).array();
+    }
+}
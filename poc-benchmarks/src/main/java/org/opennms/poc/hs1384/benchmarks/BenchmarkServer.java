@@ -0,0 +1,97 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.benchmarks;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.okhttp.OkHttpChannelBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * gRPC server plus channel factory for one benchmark trial.  The server is configured like GrpcServer (default
+ *  executor, 1MB max inbound message), so the numbers reflect the production setup rather than a tuned one.
+ */
+public final class BenchmarkServer implements AutoCloseable {
+
+    private static final AtomicLong NAME_COUNTER = new AtomicLong(0);
+
+    private final BenchmarkTransport transport;
+    private final String inProcessName;
+    private final Server server;
+
+    private BenchmarkServer(BenchmarkTransport transport, String inProcessName, Server server) {
+        this.transport = transport;
+        this.inProcessName = inProcessName;
+        this.server = server;
+    }
+
+    public static BenchmarkServer start(BenchmarkTransport transport, ServerServiceDefinition service, ServerInterceptor... interceptors)
+            throws IOException {
+
+        String inProcessName = "poc-benchmark-" + NAME_COUNTER.incrementAndGet();
+
+        Server server = switch (transport) {
+            case IN_PROCESS -> InProcessServerBuilder.forName(inProcessName)
+                    .addService(ServerInterceptors.intercept(service, interceptors))
+                    .maxInboundMessageSize(1_000_000)
+                    .build();
+            case NETTY, OK_HTTP -> NettyServerBuilder.forPort(0)
+                    .addService(ServerInterceptors.intercept(service, interceptors))
+                    .maxInboundMessageSize(1_000_000)
+                    .build();
+        };
+
+        return new BenchmarkServer(transport, inProcessName, server.start());
+    }
+
+    public ManagedChannel newChannel() {
+        return switch (transport) {
+            case IN_PROCESS -> InProcessChannelBuilder.forName(inProcessName).build();
+            case NETTY -> NettyChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+            case OK_HTTP -> OkHttpChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+        };
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        server.shutdownNow();
+        server.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.benchmarks;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Codec;
+import org.opennms.poc.hs1384.compression.MessageCompression;
+import org.opennms.poc.hs1384.grpc.TestRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU per message of each message encoding, compressing and decompressing on one thread, for Minion-like messages of
+ *  three sizes.  The message bytes on the wire are printed at the end of each trial, next to the uncompressed size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    public enum MessageKind {
+        /**
+         * Minion heartbeat, a few dozen bytes.
+         */
+        HEARTBEAT(0),
+
+        /**
+         * Collection results of one resource, about 2 KB.
+         */
+        SAMPLES(2 * 1024),
+
+        /**
+         * Collection results of a whole node, or a flow export, about 64 KB.
+         */
+        BULK(64 * 1024);
+
+        private final int approximateSize;
+
+        MessageKind(int approximateSize) {
+            this.approximateSize = approximateSize;
+        }
+    }
+
+    @Param({ "IDENTITY", "GZIP", "SNAPPY" })
+    public MessageCompression.Encoding encoding;
+
+    @Param({ "HEARTBEAT", "SAMPLES", "BULK" })
+    public MessageKind messageKind;
+
+    private final ByteArrayOutputStream wire = new ByteArrayOutputStream();
+
+    private Codec codec;
+    private TestRequest message;
+    private byte[] compressed;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        codec = encoding.getCodec();
+        message = createMessage(messageKind);
+
+        compress();
+        compressed = wire.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println(encoding + " " + messageKind + ": " + message.getSerializedSize() + " bytes uncompressed, " + compressed.length + " on the wire");
+    }
+
+    @Benchmark
+    public int compress() throws IOException {
+        wire.reset();
+        try (OutputStream os = codec.compress(wire)) {
+            message.writeTo(os);
+        }
+
+        return wire.size();
+    }
+
+    @Benchmark
+    public TestRequest decompress() throws IOException {
+        return TestRequest.parseFrom(codec.decompress(new ByteArrayInputStream(compressed)));
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    /**
+     * Text made of repeated keys and random values, which compresses about as well as real collection results.
+     */
+    private static TestRequest createMessage(MessageKind messageKind) {
+        if (messageKind == MessageKind.HEARTBEAT) {
+            return TestRequest.newBuilder().setQuery("HEARTBEAT minion-0042 seq=1234567").build();
+        }
+
+        Random random = new Random(1384);
+        StringBuilder samples = new StringBuilder();
+        while (samples.length() < messageKind.approximateSize) {
+            samples.append("node=").append(random.nextInt(1000))
+                    .append(" resource=interfaceSnmp[eth").append(random.nextInt(48)).append(']')
+                    .append(" ifHCInOctets=").append(random.nextLong() & Long.MAX_VALUE)
+                    .append(" ifHCOutOctets=").append(random.nextLong() & Long.MAX_VALUE)
+                    .append(" ifInErrors=").append(random.nextInt(10))
+                    .append(" timestamp=").append(1_680_000_000_000L + random.nextInt(300_000))
+                    .append('\n');
+        }
+
+        return TestRequest.newBuilder().setPayload(ByteString.copyFromUtf8(samples.toString())).build();
+    }
+}
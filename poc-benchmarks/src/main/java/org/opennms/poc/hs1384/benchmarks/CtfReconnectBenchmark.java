@@ -0,0 +1,152 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.benchmarks;
+
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.okhttp.OkHttpChannelBuilder;
+import org.opennms.poc.hs1384.Http2FrameFormatter;
+import org.opennms.poc.hs1384.NioConnectThenFailEngine;
+import org.opennms.poc.hs1384.census.TransportCensus;
+import org.opennms.poc.hs1384.journal.LifecycleJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reconnect latency against the NIO CTF engine: from getState(true) on an IDLE channel until the connection attempt
+ *  ends (the channel leaves CONNECTING).  The CTF server answers every connection with SETTINGS + GOAWAY, so the
+ *  channel drops back to IDLE after each attempt, ready for the next invocation.
+ *
+ * Every attempt opens a new TCP connection; the trial reports how many the server still held open at the end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class CtfReconnectBenchmark {
+
+    private static final long ATTEMPT_TIMEOUT_MS = 5_000;
+
+    @Param({ "NETTY", "OK_HTTP" })
+    public BenchmarkTransport transport;
+
+    private NioConnectThenFailEngine ctfEngine;
+    private ManagedChannel channel;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+
+        Http2FrameFormatter formatter = new Http2FrameFormatter();
+        ctfEngine = new NioConnectThenFailEngine(
+                new InetSocketAddress("localhost", port),
+                1,
+                60_000,
+                formatter.getSettingsFrame(),
+                formatter.getGoAwayFrame(),
+                new TransportCensus("ctf-benchmark"),
+                LifecycleJournal.disabled()
+        );
+        ctfEngine.start();
+
+        channel = switch (transport) {
+            case NETTY -> NettyChannelBuilder.forAddress("localhost", port).usePlaintext().build();
+            case OK_HTTP -> OkHttpChannelBuilder.forAddress("localhost", port).usePlaintext().build();
+            case IN_PROCESS -> throw new IllegalArgumentException("the CTF server needs a network transport");
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.out.println("CTF connections still open at end of trial: " + ctfEngine.getOpenConnectionCount());
+
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        ctfEngine.shutdown();
+    }
+
+    @Setup(Level.Invocation)
+    public void awaitIdle() throws InterruptedException {
+        ConnectivityState state;
+        while ((state = channel.getState(false)) != ConnectivityState.IDLE) {
+            awaitChange(state);
+        }
+    }
+
+    @Benchmark
+    public boolean reconnect() throws InterruptedException {
+        CountDownLatch attemptEnded = new CountDownLatch(1);
+
+        // Register before requesting the connection, so no transition can be missed
+        channel.notifyWhenStateChanged(ConnectivityState.IDLE, () -> onStateChange(attemptEnded));
+        channel.getState(true);
+
+        return attemptEnded.await(ATTEMPT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void onStateChange(CountDownLatch attemptEnded) {
+        if (channel.getState(false) == ConnectivityState.CONNECTING) {
+            channel.notifyWhenStateChanged(ConnectivityState.CONNECTING, () -> onStateChange(attemptEnded));
+        } else {
+            attemptEnded.countDown();
+        }
+    }
+
+    private void awaitChange(ConnectivityState source) throws InterruptedException {
+        CountDownLatch changed = new CountDownLatch(1);
+        channel.notifyWhenStateChanged(source, changed::countDown);
+        changed.await(ATTEMPT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+}
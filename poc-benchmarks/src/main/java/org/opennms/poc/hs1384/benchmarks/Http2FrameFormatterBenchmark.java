@@ -0,0 +1,90 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.benchmarks;
+
+import org.opennms.poc.hs1384.Http2Frame;
+import org.opennms.poc.hs1384.Http2FrameFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the frames the CTF server sends, and of the pre-encoded paths it actually uses per connection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Http2FrameFormatterBenchmark {
+
+    private final Http2FrameFormatter formatter = new Http2FrameFormatter();
+    private final byte[] debugData = "connect-then-fail".getBytes();
+
+    @Benchmark
+    public Http2Frame buildGoAway() {
+        return Http2FrameFormatter.goAway().build();
+    }
+
+    @Benchmark
+    public Http2Frame buildGoAwayWithDebugData() {
+        return Http2FrameFormatter.goAway().lastStreamId(1).debugData(debugData).build();
+    }
+
+    @Benchmark
+    public Http2Frame buildSettings() {
+        return Http2FrameFormatter.settings().setting(Http2FrameFormatter.SETTINGS_MAX_CONCURRENT_STREAMS, 0x7fffffff).build();
+    }
+
+    @Benchmark
+    public Http2Frame buildPing() {
+        return Http2FrameFormatter.ping().opaqueData(System.nanoTime()).build();
+    }
+
+    @Benchmark
+    public byte[] formatGoAwayFrameCopy() {
+        return formatter.formatGoAwayFrame();
+    }
+
+    @Benchmark
+    public ByteBuffer preEncodedGoAwayView() {
+        return formatter.getGoAwayFrame().view();
+    }
+}
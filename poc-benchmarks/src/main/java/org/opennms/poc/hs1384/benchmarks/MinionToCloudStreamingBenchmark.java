@@ -0,0 +1,212 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.benchmarks;
+
+import com.google.protobuf.Empty;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import org.opennms.poc.hs1384.TestService;
+import org.opennms.poc.hs1384.client.BatchingStreamObserver;
+import org.opennms.poc.hs1384.grpc.TestRequest;
+import org.opennms.poc.hs1384.grpc.TestRequestBatch;
+import org.opennms.poc.hs1384.grpc.TestServiceGrpc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Messages per second through one minion-to-cloud stream.  Each invocation sends a run of messages, honouring the
+ *  stream's flow control, and completes once the server has received all of them (counted by an interceptor, since
+ *  the service only responds once the stream completes).
+ *
+ * batchSize 1 uses minionToCloudMessages directly; larger sizes go through the client's BatchingStreamObserver and
+ *  minionToCloudBatches, flushed at the end of each invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MinionToCloudStreamingBenchmark {
+
+    private static final int MESSAGES_PER_INVOCATION = 1_000;
+
+    @Param({ "IN_PROCESS", "NETTY", "OK_HTTP" })
+    public BenchmarkTransport transport;
+
+    @Param({ "16", "1024" })
+    public int querySize;
+
+    @Param({ "1", "100" })
+    public int batchSize;
+
+    private final AtomicLong serverReceived = new AtomicLong(0);
+    private final Object readyLock = new Object();
+
+    private TestService service;
+    private BenchmarkServer server;
+    private ManagedChannel channel;
+    private ScheduledExecutorService flushScheduler;
+    private ClientCallStreamObserver<?> callStream;
+    private StreamObserver<TestRequest> requestStream;
+    private BatchingStreamObserver batchingStream;
+    private TestRequest message;
+    private long sent;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        service = new TestService();
+        service.init();
+        server = BenchmarkServer.start(transport, service.getServiceDefinition(), new ReceivedCountingInterceptor());
+        channel = server.newChannel();
+        message = TestRequest.newBuilder().setQuery("x".repeat(querySize)).build();
+
+        TestServiceGrpc.TestServiceStub stub = TestServiceGrpc.newStub(channel);
+        if (batchSize == 1) {
+            requestStream = stub.minionToCloudMessages(new ReadyTrackingResponseObserver<>());
+        } else {
+            // Size-triggered flushes plus the explicit flush per invocation; the timer never fires in practice
+            flushScheduler = Executors.newSingleThreadScheduledExecutor();
+            batchingStream = new BatchingStreamObserver(
+                    stub.minionToCloudBatches(new ReadyTrackingResponseObserver<TestRequestBatch>()), batchSize, 60_000, flushScheduler);
+            requestStream = batchingStream;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        requestStream.onCompleted();
+        if (flushScheduler != null) {
+            flushScheduler.shutdownNow();
+        }
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.close();
+        service.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_INVOCATION)
+    public void stream() throws InterruptedException {
+        for (int cur = 0; cur < MESSAGES_PER_INVOCATION; cur++) {
+            awaitReady();
+            requestStream.onNext(message);
+        }
+
+        if (batchingStream != null) {
+            batchingStream.flush();
+        }
+
+        sent += MESSAGES_PER_INVOCATION;
+        while (serverReceived.get() < sent) {
+            LockSupport.parkNanos(1_000);
+        }
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void awaitReady() throws InterruptedException {
+        synchronized (readyLock) {
+            while (! callStream.isReady()) {
+                readyLock.wait();
+            }
+        }
+    }
+
+    private class ReadyTrackingResponseObserver<ReqT> implements ClientResponseObserver<ReqT, Empty> {
+        @Override
+        public void beforeStart(ClientCallStreamObserver<ReqT> stream) {
+            callStream = stream;
+            stream.setOnReadyHandler(() -> {
+                synchronized (readyLock) {
+                    readyLock.notifyAll();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(Empty value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+
+    /**
+     * Counts received TestRequests, unpacking batches.
+     */
+    private class ReceivedCountingInterceptor implements ServerInterceptor {
+        @Override
+        public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+            return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(call, headers)) {
+                @Override
+                public void onMessage(ReqT message) {
+                    super.onMessage(message);
+                    if (message instanceof TestRequestBatch batch) {
+                        serverReceived.addAndGet(batch.getRequestsCount());
+                    } else {
+                        serverReceived.incrementAndGet();
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.benchmarks;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Empty;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import org.opennms.poc.hs1384.TestService;
+import org.opennms.poc.hs1384.grpc.TestRequest;
+import org.opennms.poc.hs1384.grpc.TestServiceGrpc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Receiving large minion-to-cloud messages over Netty: the current string path (query) against the binary path
+ *  (payload), each parsed by the standard marshaller or by TestService's zero-copy one.  One operation is 1 MB
+ *  received by the server; run with the GC profiler to get the heap allocated per MB (gc.alloc.rate.norm, which
+ *  includes the client side -- the same for both marshallers):
+ *
+ * <pre>
+ *     java -jar benchmarks.jar PayloadAllocationBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadAllocationBenchmark {
+
+    private static final int BYTES_PER_OPERATION = 1024 * 1024;
+
+    public enum PayloadType {
+        STRING,
+        BYTES
+    }
+
+    @Param({ "STRING", "BYTES" })
+    public PayloadType payloadType;
+
+    @Param({ "false", "true" })
+    public boolean zeroCopy;
+
+    @Param({ "65536" })
+    public int messageSize;
+
+    private final AtomicLong serverReceived = new AtomicLong(0);
+    private final Object readyLock = new Object();
+
+    private TestService service;
+    private BenchmarkServer server;
+    private ManagedChannel channel;
+    private ClientCallStreamObserver<TestRequest> requestStream;
+    private TestRequest message;
+    private int messagesPerOperation;
+    private long sent;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        service = new TestService();
+        service.setZeroCopy(zeroCopy);
+        service.init();
+
+        server = BenchmarkServer.start(BenchmarkTransport.NETTY, service.getServiceDefinition(), new ReceivedCountingInterceptor());
+        channel = server.newChannel();
+
+        message = switch (payloadType) {
+            case STRING -> TestRequest.newBuilder().setQuery("x".repeat(messageSize)).build();
+            case BYTES -> TestRequest.newBuilder().setPayload(ByteString.copyFrom(new byte[messageSize])).build();
+        };
+        messagesPerOperation = BYTES_PER_OPERATION / messageSize;
+
+        TestServiceGrpc.newStub(channel).minionToCloudMessages(new ReadyTrackingResponseObserver());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        requestStream.onCompleted();
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.close();
+        service.shutdown();
+    }
+
+    @Benchmark
+    public void receiveOneMegabyte() throws InterruptedException {
+        for (int cur = 0; cur < messagesPerOperation; cur++) {
+            awaitReady();
+            requestStream.onNext(message);
+        }
+
+        sent += messagesPerOperation;
+        while (serverReceived.get() < sent) {
+            LockSupport.parkNanos(1_000);
+        }
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void awaitReady() throws InterruptedException {
+        synchronized (readyLock) {
+            while (! requestStream.isReady()) {
+                readyLock.wait();
+            }
+        }
+    }
+
+    private class ReadyTrackingResponseObserver implements ClientResponseObserver<TestRequest, Empty> {
+        @Override
+        public void beforeStart(ClientCallStreamObserver<TestRequest> stream) {
+            requestStream = stream;
+            stream.setOnReadyHandler(() -> {
+                synchronized (readyLock) {
+                    readyLock.notifyAll();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(Empty value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+
+    /**
+     * Counts the messages delivered to the service, i.e. parsed.
+     */
+    private class ReceivedCountingInterceptor implements ServerInterceptor {
+        @Override
+        public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+            return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(call, headers)) {
+                @Override
+                public void onMessage(ReqT message) {
+                    super.onMessage(message);
+                    serverReceived.incrementAndGet();
+                }
+            };
+        }
+    }
+}
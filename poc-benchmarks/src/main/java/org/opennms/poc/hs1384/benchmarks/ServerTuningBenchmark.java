@@ -0,0 +1,140 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.benchmarks;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import org.opennms.poc.hs1384.NettyServerTuning;
+import org.opennms.poc.hs1384.TestService;
+import org.opennms.poc.hs1384.grpc.TestRequest;
+import org.opennms.poc.hs1384.grpc.TestResponse;
+import org.opennms.poc.hs1384.grpc.TestServiceGrpc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unary throughput of a Netty server built with {@link NettyServerTuning}, as GrpcServer builds it, at each
+ *  combination of transport, executor, worker threads and per-connection call limit.  Each invocation keeps
+ *  {@value #CALLS_PER_INVOCATION} calls in flight on one connection and waits for all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServerTuningBenchmark {
+
+    private static final int CALLS_PER_INVOCATION = 64;
+
+    @Param({ "NIO", "EPOLL" })
+    public NettyServerTuning.Transport serverTransport;
+
+    @Param({ "CACHED", "FIXED", "DIRECT" })
+    public NettyServerTuning.ExecutorType executor;
+
+    @Param({ "1", "4" })
+    public int workerThreads;
+
+    // 0 = unlimited
+    @Param({ "0", "16" })
+    public int maxConcurrentCallsPerConnection;
+
+    private TestService service;
+    private NettyServerTuning tuning;
+    private Server server;
+    private ManagedChannel channel;
+    private TestServiceGrpc.TestServiceFutureStub stub;
+    private TestRequest request;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        service = new TestService();
+        service.init();
+
+        tuning = new NettyServerTuning();
+        tuning.setTransport(serverTransport);
+        tuning.setExecutorType(executor);
+        tuning.setWorkerThreads(workerThreads);
+        tuning.setMaxConcurrentCallsPerConnection(maxConcurrentCallsPerConnection);
+
+        server = tuning.newServerBuilder(new InetSocketAddress("localhost", 0))
+                .addService(service.getServiceDefinition())
+                .maxInboundMessageSize(1_000_000)
+                .build()
+                .start();
+
+        channel = NettyChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+        stub = TestServiceGrpc.newFutureStub(channel);
+        request = TestRequest.newBuilder().setQuery("benchmark-query").build();
+
+        // Connect outside of the measurement
+        stub.request(request).get();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        tuning.shutdown();
+        service.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS_PER_INVOCATION)
+    public List<TestResponse> request() throws Exception {
+        List<ListenableFuture<TestResponse>> calls = new ArrayList<>(CALLS_PER_INVOCATION);
+        for (int cur = 0; cur < CALLS_PER_INVOCATION; cur++) {
+            calls.add(stub.request(request));
+        }
+
+        return Futures.allAsList(calls).get();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.benchmarks;
+
+import io.grpc.ManagedChannel;
+import org.opennms.poc.hs1384.TestService;
+import org.opennms.poc.hs1384.grpc.TestRequest;
+import org.opennms.poc.hs1384.grpc.TestResponse;
+import org.opennms.poc.hs1384.grpc.TestServiceGrpc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip latency of TestService.request over each transport, using a blocking stub as the client does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnaryRequestBenchmark {
+
+    @Param({ "IN_PROCESS", "NETTY", "OK_HTTP" })
+    public BenchmarkTransport transport;
+
+    private TestService service;
+    private BenchmarkServer server;
+    private ManagedChannel channel;
+    private TestServiceGrpc.TestServiceBlockingStub stub;
+    private TestRequest request;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        service = new TestService();
+        service.init();
+        server = BenchmarkServer.start(transport, service.getServiceDefinition());
+        channel = server.newChannel();
+        stub = TestServiceGrpc.newBlockingStub(channel);
+        request = TestRequest.newBuilder().setQuery("benchmark-query").build();
+
+        // Connect outside of the measurement
+        stub.request(request);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.close();
+        service.shutdown();
+    }
+
+    @Benchmark
+    public TestResponse request() {
+        return stub.request(request);
+    }
+}
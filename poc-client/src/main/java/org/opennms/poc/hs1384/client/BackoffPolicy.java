@@ -0,0 +1,45 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+/**
+ * Computes the delay before each reconnect attempt.  Implementations are stateless so one policy can be shared by
+ *  any number of reconnect strategies; the caller keeps the attempt number and previous delay.
+ */
+public interface BackoffPolicy {
+
+    /**
+     * @param attempt number of attempts already made since the connection was lost (0 for the first).
+     * @param previousDelay delay, in ms, returned for the previous attempt (0 for the first).
+     * @return delay, in ms, before the next attempt.
+     */
+    long nextDelay(int attempt, long previousDelay);
+
+}
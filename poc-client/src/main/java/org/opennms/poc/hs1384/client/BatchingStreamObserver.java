@@ -0,0 +1,160 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import io.grpc.stub.StreamObserver;
+import org.opennms.poc.hs1384.grpc.TestRequest;
+import org.opennms.poc.hs1384.grpc.TestRequestBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minion-to-cloud batching stage: accumulates messages and sends them as one {@link TestRequestBatch} once the batch
+ *  holds maxBatchSize messages, or maxDelayMs after its first message, whichever comes first.
+ *
+ * Thread-safe, unlike the stream it wraps: all calls on the batch stream are made while holding this object's lock.
+ */
+public class BatchingStreamObserver implements BufferingStreamObserver<TestRequest> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchingStreamObserver.class);
+
+    private final StreamObserver<TestRequestBatch> batchStream;
+    private final int maxBatchSize;
+    private final long maxDelayMs;
+    private final ScheduledExecutorService flushScheduler;
+
+    private final TestRequestBatch.Builder pending = TestRequestBatch.newBuilder();
+    private final AtomicLong batchCount = new AtomicLong(0);
+    private final AtomicLong messageCount = new AtomicLong(0);
+
+    private ScheduledFuture<?> flushTask;
+    private boolean completed;
+
+    public BatchingStreamObserver(StreamObserver<TestRequestBatch> batchStream, int maxBatchSize, long maxDelayMs,
+                                  ScheduledExecutorService flushScheduler) {
+        this.batchStream = batchStream;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMs = maxDelayMs;
+        this.flushScheduler = flushScheduler;
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public long getMessageCount() {
+        return messageCount.get();
+    }
+
+    @Override
+    public synchronized void onNext(TestRequest request) {
+        if (completed) {
+            throw new IllegalStateException("batching stream already completed");
+        }
+
+        pending.addRequests(request);
+
+        if (pending.getRequestsCount() >= maxBatchSize) {
+            flush();
+        } else if (flushTask == null) {
+            flushTask = flushScheduler.schedule(this::scheduledFlush, maxDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Send the pending messages now, if there are any.
+     */
+    public synchronized void flush() {
+        cancelFlushTask();
+
+        if (completed || (pending.getRequestsCount() == 0)) {
+            return;
+        }
+
+        TestRequestBatch batch = pending.build();
+        pending.clear();
+
+        batchStream.onNext(batch);
+        batchCount.incrementAndGet();
+        messageCount.addAndGet(batch.getRequestsCount());
+    }
+
+    @Override
+    public synchronized void onError(Throwable t) {
+        cancelFlushTask();
+        pending.clear();
+        completed = true;
+
+        batchStream.onError(t);
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+        flush();
+        completed = true;
+
+        batchStream.onCompleted();
+    }
+
+    @Override
+    public synchronized List<TestRequest> abandon() {
+        cancelFlushTask();
+        completed = true;
+
+        List<TestRequest> unsent = List.copyOf(pending.getRequestsList());
+        pending.clear();
+        return unsent;
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException rtExc) {
+            LOG.info("Flush of minion-to-cloud batch failed", rtExc);
+        }
+    }
+
+    private void cancelFlushTask() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+    }
+}
@@ -27,33 +27,23 @@
  *
  */
 
-package org.opennms.poc.hs1384;
+package org.opennms.poc.hs1384.client;
 
 import io.grpc.stub.StreamObserver;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-public class LoggingStreamObserver<T> implements StreamObserver<T> {
-    private static final Logger LOG = LoggerFactory.getLogger(LoggingStreamObserver.class);
+import java.util.List;
 
-    private final String label;
-
-    public LoggingStreamObserver(String label) {
-        this.label = label;
-    }
-
-    @Override
-    public void onNext(T value) {
-        LOG.info("STREAM {} NEXT VALUE: {}", this.label, value);
-    }
+/**
+ * Stream stage that may hold messages back before passing them on, e.g. to batch them.
+ */
+public interface BufferingStreamObserver<T> extends StreamObserver<T> {
 
-    @Override
-    public void onError(Throwable t) {
-        LOG.error("STREAM {} ERROR", this.label, t);
-    }
+    /**
+     * Stop passing messages on, for a stream that ended underneath the stage: cancel any pending send, and hand back
+     *  what was accepted but not yet passed on, so the caller can resend it elsewhere.
+     *
+     * @return the unsent messages, oldest first.
+     */
+    List<T> abandon();
 
-    @Override
-    public void onCompleted() {
-        LOG.info("STREAM {} COMPLETED", this.label);
-    }
 }
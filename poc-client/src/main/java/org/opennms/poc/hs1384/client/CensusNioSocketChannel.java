@@ -0,0 +1,90 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioSocketChannel;
+import org.opennms.poc.hs1384.census.TransportCensus;
+
+import java.net.SocketAddress;
+
+/**
+ * Netty socket channel that records itself in a {@link TransportCensus} once connected, and as closed when closed.
+ *  Plugged into channels with {@code NettyChannelBuilder.channelFactory()}, which grpc requires to be paired with an
+ *  explicit event-loop group (a {@link NioEventLoopGroup}).
+ */
+public class CensusNioSocketChannel extends NioSocketChannel {
+
+    private final TransportCensus census;
+
+    private SocketAddress connectingTo;
+    private TransportCensus.Transport censusEntry;
+
+    public CensusNioSocketChannel(TransportCensus census) {
+        this.census = census;
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        connectingTo = remoteAddress;
+
+        boolean connected = super.doConnect(remoteAddress, localAddress);
+        if (connected) {
+            recordOpened();
+        }
+
+        return connected;
+    }
+
+    @Override
+    protected void doFinishConnect() throws Exception {
+        super.doFinishConnect();
+        recordOpened();
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        try {
+            super.doClose();
+        } finally {
+            if (censusEntry != null) {
+                censusEntry.closed();
+            }
+        }
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void recordOpened() {
+        censusEntry = census.opened(TransportCensus.hostAndPortOf(connectingTo), localAddress0(), connectingTo);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import org.opennms.poc.hs1384.census.TransportCensus;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+
+/**
+ * Socket factory for the OkHttp transport whose sockets record themselves in a {@link TransportCensus} once connected,
+ *  and as closed when closed.
+ */
+public class CensusSocketFactory extends SocketFactory {
+
+    private final TransportCensus census;
+
+    public CensusSocketFactory(TransportCensus census) {
+        this.census = census;
+    }
+
+    @Override
+    public Socket createSocket() {
+        return new CensusSocket();
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return connected(new InetSocketAddress(host, port), null);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return connected(new InetSocketAddress(host, port), new InetSocketAddress(localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return connected(new InetSocketAddress(host, port), null);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return connected(new InetSocketAddress(address, port), new InetSocketAddress(localAddress, localPort));
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private Socket connected(SocketAddress remoteAddress, SocketAddress localAddress) throws IOException {
+        CensusSocket socket = new CensusSocket();
+        try {
+            if (localAddress != null) {
+                socket.bind(localAddress);
+            }
+            socket.connect(remoteAddress);
+        } catch (IOException ioExc) {
+            socket.close();
+            throw ioExc;
+        }
+
+        return socket;
+    }
+
+    private class CensusSocket extends Socket {
+        private TransportCensus.Transport censusEntry;
+
+        @Override
+        public void connect(SocketAddress endpoint, int timeout) throws IOException {
+            super.connect(endpoint, timeout);
+
+            synchronized (this) {
+                censusEntry = census.opened(TransportCensus.hostAndPortOf(endpoint), getLocalSocketAddress(), endpoint);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (censusEntry != null) {
+                    censusEntry.closed();
+                }
+            }
+        }
+    }
+}
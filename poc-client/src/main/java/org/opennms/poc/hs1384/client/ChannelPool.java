@@ -0,0 +1,169 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Spreads the calls of one client over several channels -- each its own TCP connection, and with Netty its own
+ *  event loop -- so a single Minion's traffic is not serialized through one connection and one thread.  Each new call
+ *  goes to the channel with the fewest outstanding calls; ties are broken round-robin.
+ *
+ * The first channel is the {@link #getPrimaryChannel() primary}: the client opens its long-lived streams on it
+ *  directly, where the pool cannot count them, so with more than one channel the pool leaves it out and spreads its
+ *  calls over the others.
+ *
+ * A call is outstanding from its creation until it closes, so calls that are created but never started hold their
+ *  channel's count; the stubs always start the calls they create.
+ */
+public class ChannelPool extends Channel {
+
+    private final List<ManagedChannel> channels;
+    private final AtomicInteger[] outstanding;
+    private final AtomicLongArray callCounts;
+    private final AtomicInteger nextStart = new AtomicInteger(0);
+
+    public ChannelPool(List<ManagedChannel> channels) {
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("A channel pool needs at least one channel");
+        }
+
+        this.channels = List.copyOf(channels);
+        this.outstanding = new AtomicInteger[channels.size()];
+        this.callCounts = new AtomicLongArray(channels.size());
+
+        for (int cur = 0; cur < outstanding.length; cur++) {
+            outstanding[cur] = new AtomicInteger(0);
+        }
+    }
+
+    public List<ManagedChannel> getChannels() {
+        return channels;
+    }
+
+    /**
+     * @return the channel for calls that must stay on one connection, e.g. long-lived streams.
+     */
+    public ManagedChannel getPrimaryChannel() {
+        return channels.get(0);
+    }
+
+    @Override
+    public String authority() {
+        return channels.get(0).authority();
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+        int index = selectLeastOutstanding();
+        outstanding[index].incrementAndGet();
+        callCounts.incrementAndGet(index);
+
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(channels.get(index).newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                try {
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                        @Override
+                        public void onClose(Status status, Metadata trailers) {
+                            outstanding[index].decrementAndGet();
+                            super.onClose(status, trailers);
+                        }
+                    }, headers);
+                } catch (RuntimeException rtExc) {
+                    outstanding[index].decrementAndGet();
+                    throw rtExc;
+                }
+            }
+        };
+    }
+
+    public void shutdown() {
+        channels.forEach(ManagedChannel::shutdown);
+    }
+
+    public void awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ManagedChannel channel : channels) {
+            channel.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public String toString() {
+        int[] outstandingCounts = new int[outstanding.length];
+        for (int cur = 0; cur < outstandingCounts.length; cur++) {
+            outstandingCounts[cur] = outstanding[cur].get();
+        }
+
+        return "channels=" + channels.size() + " outstanding=" + Arrays.toString(outstandingCounts) + " calls=" + callCounts;
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    /**
+     * Approximate under concurrency: two calls may pick the same channel before either is counted.  Skips the primary
+     *  channel unless it is the only one.
+     */
+    private int selectLeastOutstanding() {
+        int first = (outstanding.length > 1) ? 1 : 0;
+        int size = outstanding.length - first;
+        int start = first + Math.floorMod(nextStart.getAndIncrement(), size);
+
+        int best = start;
+        int bestCount = outstanding[start].get();
+        for (int cur = 1; (cur < size) && (bestCount > 0); cur++) {
+            int index = first + ((start - first + cur) % size);
+            int count = outstanding[index].get();
+            if (count < bestCount) {
+                best = index;
+                bestCount = count;
+            }
+        }
+
+        return best;
+    }
+}
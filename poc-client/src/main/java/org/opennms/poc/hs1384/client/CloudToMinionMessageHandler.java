@@ -0,0 +1,93 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import io.grpc.stub.StreamObserver;
+import org.opennms.poc.hs1384.grpc.CloudToMinionAck;
+import org.opennms.poc.hs1384.grpc.CloudToMinionMessage;
+import org.opennms.poc.hs1384.grpc.TestServiceGrpc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minion side of the cloud-to-minion stream: registers the Minion ID with the cloud, then echoes an ack for every
+ *  message pushed by the cloud so the cloud can measure push latency.
+ */
+public class CloudToMinionMessageHandler implements StreamObserver<CloudToMinionMessage> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CloudToMinionMessageHandler.class);
+
+    private final String minionId;
+    private final AtomicLong receivedCount = new AtomicLong(0);
+
+    private StreamObserver<CloudToMinionAck> ackStream;
+
+    public CloudToMinionMessageHandler(String minionId) {
+        this.minionId = minionId;
+    }
+
+    public void start(TestServiceGrpc.TestServiceStub serviceStub) {
+        ackStream = serviceStub.cloudToMinionMessages(this);
+        ackStream.onNext(CloudToMinionAck.newBuilder().setMinionId(minionId).build());
+
+        LOG.info("Initialized CLOUD-TO-MINION stream for minion {}", minionId);
+    }
+
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    @Override
+    public void onNext(CloudToMinionMessage message) {
+        receivedCount.incrementAndGet();
+        LOG.debug("CLOUD-TO-MINION {} {} for minion {}", message.getPing() ? "ping" : "message", message.getSequence(), minionId);
+
+        ackStream.onNext(
+                CloudToMinionAck.newBuilder()
+                        .setSequence(message.getSequence())
+                        .setSentTimeNanos(message.getSentTimeNanos())
+                        .setPing(message.getPing())
+                        .build()
+        );
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        LOG.info("CLOUD-TO-MINION stream for minion {} failed: {}", minionId, t.getMessage());
+    }
+
+    @Override
+    public void onCompleted() {
+        LOG.info("CLOUD-TO-MINION stream for minion {} completed", minionId);
+        ackStream.onCompleted();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * "Decorrelated jitter" backoff: each delay is random between the base delay and 3x the previous delay, capped at
+ *  the maximum delay.  Delays grow roughly exponentially, but clients that lost the connection together spread out
+ *  instead of retrying in lockstep.
+ */
+public class DecorrelatedJitterBackoffPolicy implements BackoffPolicy {
+
+    private final long baseDelay;
+    private final long maxDelay;
+
+    public DecorrelatedJitterBackoffPolicy(long baseDelay, long maxDelay) {
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    @Override
+    public long nextDelay(int attempt, long previousDelay) {
+        long upper = Math.max(baseDelay, previousDelay) * 3;
+        if (upper <= baseDelay) {
+            return Math.min(maxDelay, baseDelay);
+        }
+
+        return Math.min(maxDelay, ThreadLocalRandom.current().nextLong(baseDelay, upper));
+    }
+}
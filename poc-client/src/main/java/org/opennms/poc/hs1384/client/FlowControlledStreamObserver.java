@@ -0,0 +1,345 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Bounded, flow-control-aware send side of a Minion's client streams.  Messages go into a queue of fixed capacity and
+ *  are only passed downstream while the attached call {@link ClientCallStreamObserver#isReady() is ready}; the queue is
+ *  drained again from the call's on-ready handler.  A connection that stops reading (e.g. CTF) therefore holds at most
+ *  the queue, instead of an unbounded buffer in the transport.
+ *
+ * The queue outlives its calls: when a call ends it is detached and messages keep queueing (and spilling, with a
+ *  spill) until the next call is attached with {@link #responseObserver}, which then replays them in order.  Once the
+ *  spill holds anything, new messages go behind it, so the order is kept across the two tiers.  Under
+ *  {@link OverflowPolicy#SPILL}, a message that cannot be sent right away -- no call attached, or the call not ready
+ *  -- goes straight to the spill, and the queue only stages what is replayed from it.
+ *
+ * A downstream stage that holds messages back (a {@link BufferingStreamObserver}, e.g. batching) is abandoned when its
+ *  call ends, and whatever it had not sent goes back to the head of the queue; the queue may then briefly exceed its
+ *  capacity by that much.
+ *
+ * Thread-safe: callers may send from any thread, and every call downstream is made under this object's lock.
+ */
+public class FlowControlledStreamObserver<T> implements StreamObserver<T> {
+
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutMs;
+    private final SpillQueue<T> spill;
+    private final SendQueueMetrics metrics;
+
+    private final ArrayDeque<T> queue = new ArrayDeque<>();
+
+    private ClientCallStreamObserver<?> call;
+    private StreamObserver<T> downstream;
+    private boolean completing;
+    private boolean terminated;
+
+    /**
+     * @param blockTimeoutMs maximum wait of a sender under {@link OverflowPolicy#BLOCK}.
+     * @param spill required for {@link OverflowPolicy#SPILL}; with another policy, it only replays what it already holds.
+     */
+    public FlowControlledStreamObserver(int capacity, OverflowPolicy overflowPolicy, long blockTimeoutMs, SpillQueue<T> spill,
+                                        SendQueueMetrics metrics) {
+        if ((overflowPolicy == OverflowPolicy.SPILL) && (spill == null)) {
+            throw new IllegalArgumentException("the SPILL overflow policy requires a spill queue");
+        }
+
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutMs = blockTimeoutMs;
+        this.spill = spill;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Response observer that attaches this queue to the call it is passed to, replacing any previous call.
+     *
+     * @param downstreamFactory stage between this queue and the call, e.g. batching; {@link Function#identity()} for none.
+     */
+    public <C, R> ClientResponseObserver<C, R> responseObserver(StreamObserver<R> delegate,
+                                                               Function<StreamObserver<C>, StreamObserver<T>> downstreamFactory) {
+        return new ClientResponseObserver<>() {
+            private ClientCallStreamObserver<C> requestStream;
+
+            @Override
+            public void beforeStart(ClientCallStreamObserver<C> requestStream) {
+                this.requestStream = requestStream;
+                attach(requestStream, downstreamFactory.apply(requestStream));
+            }
+
+            @Override
+            public void onNext(R value) {
+                delegate.onNext(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                detach(requestStream);
+                delegate.onError(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                detach(requestStream);
+                delegate.onCompleted();
+            }
+        };
+    }
+
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    public synchronized boolean isAttached() {
+        return call != null;
+    }
+
+    @Override
+    public synchronized void onNext(T message) {
+        if (completing || terminated) {
+            throw new IllegalStateException("stream already completed");
+        }
+
+        enqueue(message, true);
+    }
+
+    /**
+     * Like {@link #onNext}, but never waits: under {@link OverflowPolicy#BLOCK} a full queue drops the message at once.
+     *  For senders on shared threads, which one stalled stream must not hold up.
+     *
+     * @return true => the message was queued or spilled; false => it was dropped, or the stream already completed.
+     */
+    public synchronized boolean offer(T message) {
+        if (completing || terminated) {
+            return false;
+        }
+
+        return enqueue(message, false);
+    }
+
+    /**
+     * Discard everything queued and fail the attached call, if any.
+     */
+    @Override
+    public synchronized void onError(Throwable t) {
+        discardQueued();
+        terminated = true;
+        notifyAll();
+
+        if (downstream != null) {
+            downstream.onError(t);
+            call = null;
+            downstream = null;
+        }
+    }
+
+    /**
+     * Half-close the attached call once everything queued has been sent.
+     */
+    @Override
+    public synchronized void onCompleted() {
+        completing = true;
+        drain();
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private boolean enqueue(T message, boolean mayBlock) {
+        metrics.recordEnqueued();
+
+        // Once spilling, everything goes through the spill to keep the order
+        if ((spill != null) && (! spill.isEmpty())) {
+            boolean spilled = spillOrDrop(message);
+            drain();
+            return spilled;
+        }
+
+        if ((overflowPolicy == OverflowPolicy.SPILL) && ((call == null) || (! call.isReady()))) {
+            return spillOrDrop(message);
+        }
+
+        if (queue.size() >= capacity) {
+            switch (overflowPolicy) {
+                case DROP_OLDEST -> {
+                    queue.poll();
+                    metrics.recordDequeued();
+                    metrics.recordDropped(1);
+                }
+                case BLOCK -> {
+                    if ((! mayBlock) || (! awaitRoom())) {
+                        metrics.recordDropped(1);
+                        return false;
+                    }
+                }
+                case SPILL -> {
+                    return spillOrDrop(message);
+                }
+            }
+        }
+
+        queue.add(message);
+        metrics.recordQueued();
+        drain();
+        return true;
+    }
+
+    private synchronized void attach(ClientCallStreamObserver<?> requestStream, StreamObserver<T> requestDownstream) {
+        call = requestStream;
+        downstream = requestDownstream;
+        call.setOnReadyHandler(this::drain);
+    }
+
+    private synchronized void detach(ClientCallStreamObserver<?> requestStream) {
+        // Ignore the end of a call that was already replaced
+        if (call == requestStream) {
+            if (downstream instanceof BufferingStreamObserver<T> stage) {
+                requeue(stage.abandon());
+            }
+
+            call = null;
+            downstream = null;
+        }
+    }
+
+    private void requeue(List<T> unsent) {
+        for (ListIterator<T> iterator = unsent.listIterator(unsent.size()); iterator.hasPrevious(); ) {
+            queue.addFirst(iterator.previous());
+            metrics.recordQueued();
+        }
+
+        metrics.recordUnsent(unsent.size());
+    }
+
+    private synchronized void drain() {
+        if ((call == null) || terminated) {
+            return;
+        }
+
+        while (call.isReady()) {
+            if (queue.isEmpty()) {
+                refillFromSpill();
+            }
+
+            T next = queue.poll();
+            if (next == null) {
+                break;
+            }
+
+            metrics.recordDequeued();
+            refillFromSpill();
+
+            downstream.onNext(next);
+            metrics.recordSent();
+        }
+
+        if (completing && queue.isEmpty() && ((spill == null) || spill.isEmpty())) {
+            terminated = true;
+            downstream.onCompleted();
+        }
+
+        // Wake senders blocked on a full queue
+        notifyAll();
+    }
+
+    private void refillFromSpill() {
+        if (spill == null) {
+            return;
+        }
+
+        T spilled;
+        while ((queue.size() < capacity) && ((spilled = spill.poll()) != null)) {
+            metrics.recordUnspilled();
+            queue.add(spilled);
+            metrics.recordQueued();
+        }
+    }
+
+    private boolean spillOrDrop(T message) {
+        if (spill.offer(message)) {
+            metrics.recordSpilled();
+            return true;
+        }
+
+        metrics.recordDropped(1);
+        return false;
+    }
+
+    /**
+     * @return true => there is room in the queue; false => timed out, or the queue was terminated while waiting.
+     */
+    private boolean awaitRoom() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+        try {
+            while ((queue.size() >= capacity) && (! terminated)) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                wait(remaining);
+            }
+        } catch (InterruptedException intExc) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return ! terminated;
+    }
+
+    private void discardQueued() {
+        long discarded = queue.size();
+        for (int cur = 0; cur < discarded; cur++) {
+            metrics.recordDequeued();
+        }
+        queue.clear();
+
+        if (spill != null) {
+            while (spill.poll() != null) {
+                metrics.recordUnspilled();
+                discarded++;
+            }
+        }
+
+        metrics.recordDropped(discarded);
+    }
+}
@@ -29,17 +29,26 @@
 
 package org.opennms.poc.hs1384.client;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import io.grpc.internal.AbstractManagedChannelImplBuilder;
 import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
 import io.grpc.okhttp.OkHttpChannelBuilder;
 import io.grpc.stub.StreamObserver;
 import org.opennms.poc.hs1384.client.cli.GrpcClientCommandLineParser;
+import org.opennms.poc.hs1384.client.cli.GrpcTestOperation;
+import org.opennms.poc.hs1384.compression.MessageCompression;
 import org.opennms.poc.hs1384.grpc.TestRequest;
 import org.opennms.poc.hs1384.grpc.TestResponse;
 import org.opennms.poc.hs1384.grpc.TestServiceGrpc;
+import org.opennms.poc.hs1384.journal.LifecycleEvent;
+import org.opennms.poc.hs1384.metrics.StreamMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -47,11 +56,16 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 @Component
 public class GrpcClientCommandLineRunner {
@@ -64,15 +78,43 @@ public class GrpcClientCommandLineRunner {
     @Value("${grpc.port:9990}")
     private int grpcPort;
 
+    @Value("${minion.id:poc-minion}")
+    private String minionId;
+
+    @Value("${stream-log.sample-rate:0}")
+    private int streamLogSampleRate = 0;
+
+    @Value("${stream-log.summary-period:10000}")
+    private long streamLogSummaryPeriod = 10_000;
+
     @Autowired
     private GrpcClientCommandLineParser grpcClientCommandLineParser;
 
+    @Autowired
+    private ReconnectScheduler reconnectScheduler;
+
+    @Autowired
+    private TransportCensusService transportCensusService;
+
+    @Autowired
+    private LifecycleJournalService lifecycleJournalService;
+
     private ManagedChannel channel;
+    private ChannelPool channelPool;
+    private final List<NioEventLoopGroup> eventLoopGroups = new ArrayList<>();
     private TestServiceGrpc.TestServiceStub serviceStub;
-    private LoggingStreamObserver<TestResponse> loggingStreamObserver = new LoggingStreamObserver("test-response");
-    private SimpleReconnectStrategy simpleReconnectStrategy;
+    private TestServiceGrpc.TestServiceStub primaryStub;
+    private TestServiceGrpc.TestServiceFutureStub futureStub;
+    private Semaphore inFlightPermits;
+    private StreamMetrics streamMetrics;
+    private ReconnectStrategy reconnectStrategy;
     private ExecutorService executorService = Executors.newFixedThreadPool(3, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("client-exec-%d").build());
+    private ScheduledExecutorService batchFlushScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("client-batch-flush-%d").build());
+    private MinionToCloudStreamFactory minionToCloudStreamFactory;
+    private MessageCompression messageCompression;
+    private FlowControlledStreamObserver<TestRequest> minionToCloudSendQueue;
     private StreamObserver<TestRequest> minionToCloudStream;
+    private CloudToMinionMessageHandler cloudToMinionMessageHandler;
 
     private AtomicInteger channelGetStateConcurrentCallCount = new AtomicInteger(0);
     private CountDownLatch channelSpamStartLatch;
@@ -85,15 +127,43 @@ public class GrpcClientCommandLineRunner {
         try {
             this.grpcClientCommandLineParser.parseCommandLine(args);
 
-            if (this.grpcClientCommandLineParser.isUseNetty()) {
-                setupNetty();
-            } else {
-                setupOkHttp();
+            streamMetrics = new StreamMetrics(streamLogSampleRate, streamLogSummaryPeriod);
+
+            minionToCloudStreamFactory =
+                    new MinionToCloudStreamFactory(
+                            grpcClientCommandLineParser.getBatchSize(),
+                            grpcClientCommandLineParser.getBatchDelay(),
+                            batchFlushScheduler,
+                            grpcClientCommandLineParser.getSendQueueSize(),
+                            grpcClientCommandLineParser.getOverflowPolicy(),
+                            grpcClientCommandLineParser.getSpillCapacity(),
+                            grpcClientCommandLineParser.getSpillDirectory(),
+                            grpcClientCommandLineParser.getSpillDiskLimit() * 1024L * 1024L
+                    );
+
+            messageCompression =
+                    new MessageCompression(grpcClientCommandLineParser.getCompression(), grpcClientCommandLineParser.getCompressionMinBytes());
+
+            GrpcTestOperation testOperation = this.grpcClientCommandLineParser.getTestOperation();
+
+            // The simulations create their own channels (or none at all)
+            if ((testOperation == GrpcTestOperation.NORMAL_CLIENT_EXECUTION) || (testOperation == GrpcTestOperation.SPAM_CHANNEL_GET_STATE)
+                    || (testOperation == GrpcTestOperation.LOAD_TEST)) {
+                minionToCloudSendQueue = minionToCloudStreamFactory.createSendQueue(minionId);
+
+                if (this.grpcClientCommandLineParser.isUseNetty()) {
+                    setupNetty();
+                } else {
+                    setupOkHttp();
+                }
             }
 
-            switch (this.grpcClientCommandLineParser.getTestOperation()) {
+            switch (testOperation) {
                 case NORMAL_CLIENT_EXECUTION -> this.executeNormalClient();
                 case SPAM_CHANNEL_GET_STATE -> this.spamChannelGetState();
+                case SIMULATE_RECONNECT_STORM -> this.simulateReconnectStorm();
+                case SIMULATE_FLEET -> this.simulateFleet();
+                case LOAD_TEST -> this.runLoadTest();
             }
         } catch (Exception exc) {
             LOG.error("GRPC client failure", exc);
@@ -105,17 +175,27 @@ public class GrpcClientCommandLineRunner {
 //----------------------------------------
 
     private void executeNormalClient() throws Exception {
+        int maxInFlight = this.grpcClientCommandLineParser.getMaxInFlight();
+        if (maxInFlight > 0) {
+            inFlightPermits = new Semaphore(maxInFlight);
+        }
+
         int cur = 0;
         int iterationDelay = this.grpcClientCommandLineParser.getIterationDelay();
+        long start = System.nanoTime();
         while (cur < this.grpcClientCommandLineParser.getNumIterations()) {
             cur++;
 
-            LOG.info("ITERATION {}", cur);
-
-            if (this.grpcClientCommandLineParser.isExecuteAsync()) {
-                executeClientAsync(cur);
+            if (inFlightPermits != null) {
+                executeClientPipelined(cur);
             } else {
-                executeClient(cur);
+                LOG.info("ITERATION {}", cur);
+
+                if (this.grpcClientCommandLineParser.isExecuteAsync()) {
+                    executeClientAsync(cur);
+                } else {
+                    executeClient(cur);
+                }
             }
 
             if (iterationDelay > 0 ) {
@@ -123,11 +203,28 @@ public class GrpcClientCommandLineRunner {
             }
         }
 
-        int shutdownDelay = grpcClientCommandLineParser.getShutdownDelay();
+        long shutdownDelay = grpcClientCommandLineParser.getShutdownDelay();
+        if (inFlightPermits != null) {
+            // Waiting for the pipeline counts towards the shutdown delay instead of adding to it
+            long drainStart = System.nanoTime();
+            awaitPipelineDrained(cur, start);
+            shutdownDelay = Math.max(0, shutdownDelay - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - drainStart));
+        }
+
         LOG.info("WAITING: Client execution complete; waiting {} seconds before shutdown", ((double)shutdownDelay) / 1_000.0);
         delay(shutdownDelay);
         LOG.info("SHUTDOWN: Client execution complete and {}s delay complete", ((double)shutdownDelay) / 1_000.0);
 
+        if (minionToCloudStreamFactory.isFlowControlled()) {
+            LOG.info("SEND QUEUE: {}", minionToCloudStreamFactory.getSendQueueMetrics());
+        }
+        LOG.info("COMPRESSION: {}", messageCompression);
+        streamMetrics.close();
+        LOG.info("STREAMS: {}", streamMetrics);
+        LOG.info("CHANNEL POOL: {}", channelPool);
+        minionToCloudStreamFactory.shutdown();
+        shutdownChannels();
+
         System.exit(0);
     }
 
@@ -147,6 +244,61 @@ public class GrpcClientCommandLineRunner {
         }
     }
 
+    private void simulateReconnectStorm() {
+        ReconnectStormSimulator simulator =
+                new ReconnectStormSimulator(
+                        createBackoffPolicy(),
+                        grpcClientCommandLineParser.getSimulatedClients(),
+                        grpcClientCommandLineParser.getSimulatedOutage()
+                );
+
+        simulator.run();
+        System.exit(0);
+    }
+
+    private void simulateFleet() throws InterruptedException, IOException {
+        if (! grpcClientCommandLineParser.isUseNetty()) {
+            LOG.warn("The fleet simulation shares one Netty event-loop group; ignoring --ok-http");
+        }
+
+        LOG.info("SIMULATING FLEET of {} minion(s) with reconnect strategy {} and {} backoff",
+                grpcClientCommandLineParser.getFleetSize(), grpcClientCommandLineParser.getReconnectStrategyType(),
+                grpcClientCommandLineParser.getBackoffPolicyType());
+
+        MinionFleetSimulator simulator =
+                new MinionFleetSimulator(
+                        grpcHost,
+                        grpcPort,
+                        minionId,
+                        grpcClientCommandLineParser.getFleetSize(),
+                        grpcClientCommandLineParser.getFleetEventLoops(),
+                        grpcClientCommandLineParser.getHeartbeatPeriod(),
+                        this::createReconnectStrategy,
+                        minionToCloudStreamFactory,
+                        messageCompression,
+                        transportCensusService.getCensus()
+                );
+
+        simulator.run(grpcClientCommandLineParser.getShutdownDelay());
+        System.exit(0);
+    }
+
+    private void runLoadTest() throws InterruptedException {
+        OpenLoopLoadGenerator generator =
+                new OpenLoopLoadGenerator(
+                        serviceStub,
+                        grpcClientCommandLineParser.getTargetRate(),
+                        grpcClientCommandLineParser.getLoadConcurrency(),
+                        grpcClientCommandLineParser.getShutdownDelay(),
+                        grpcClientCommandLineParser.getReportInterval()
+                );
+
+        generator.run();
+        LOG.info("CHANNEL POOL: {}", channelPool);
+        shutdownChannels();
+        System.exit(0);
+    }
+
     private void runChannelSpammer(int threadNumber) {
         LOG.info("Starting Channel getState spam thread {} -- LATCH wait", threadNumber);
 
@@ -176,45 +328,102 @@ public class GrpcClientCommandLineRunner {
 //----------------------------------------
 
     private void setupNetty() {
-        NettyChannelBuilder channelBuilder = NettyChannelBuilder.forAddress(grpcHost, grpcPort)
-                .keepAliveWithoutCalls(true)
-                // .disableRetry()
-                .idleTimeout(1_000, TimeUnit.MILLISECONDS)
-                .maxInboundMessageSize(1_000_000);
-
-        commonChannelSetup(channelBuilder);
+        commonChannelSetup(channelIndex -> {
+            // A custom channel factory (for the transport census) requires an explicit event-loop group; one per
+            //  channel, so the channels of a pool do not share event-loop threads
+            NioEventLoopGroup eventLoopGroup =
+                    new NioEventLoopGroup(1, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("client-event-loop-" + channelIndex + "-%d").build());
+            eventLoopGroups.add(eventLoopGroup);
+
+            return NettyChannelBuilder.forAddress(grpcHost, grpcPort)
+                    .eventLoopGroup(eventLoopGroup)
+                    .channelFactory(transportCensusService.getNettyChannelFactory())
+                    .keepAliveWithoutCalls(true)
+                    // .disableRetry()
+                    .idleTimeout(1_000, TimeUnit.MILLISECONDS)
+                    .maxInboundMessageSize(1_000_000);
+        });
     }
 
     private void setupOkHttp() {
-        OkHttpChannelBuilder channelBuilder = OkHttpChannelBuilder.forAddress(grpcHost, grpcPort)
-                .keepAliveWithoutCalls(true)
-                .maxInboundMessageSize(1_000_000);
+        commonChannelSetup(channelIndex ->
+                OkHttpChannelBuilder.forAddress(grpcHost, grpcPort)
+                        .socketFactory(transportCensusService.getOkHttpSocketFactory())
+                        .keepAliveWithoutCalls(true)
+                        .maxInboundMessageSize(1_000_000)
+        );
+    }
+
+    private void commonChannelSetup(IntFunction<ManagedChannelBuilder<?>> channelBuilderFactory) {
+        List<ManagedChannel> channels = new ArrayList<>();
+        for (int cur = 0; cur < grpcClientCommandLineParser.getNumChannels(); cur++) {
+            ManagedChannel pooledChannel = channelBuilderFactory.apply(cur)
+                    .defaultLoadBalancingPolicy(grpcClientCommandLineParser.getLoadBalancingPolicyType().getPolicyName())
+                    .compressorRegistry(messageCompression.getCompressorRegistry())
+                    .decompressorRegistry(messageCompression.getDecompressorRegistry())
+                    .intercept(messageCompression)
+                    .usePlaintext()
+                    .build();
+
+            lifecycleJournalService.watch(pooledChannel, cur);
+            channels.add(pooledChannel);
+        }
+        channelPool = new ChannelPool(channels);
+
+        // The reconnect strategy and getState() follow the primary channel, which also carries the long-lived streams
+        //  so they are re-opened when it reconnects; the other channels only carry unary calls and connect on demand
+        channel = channelPool.getPrimaryChannel();
 
+        if (grpcClientCommandLineParser.isEnableReconnectStrategy()) {
+            LOG.info("STARTING RECONNECT STRATEGY {} with {} backoff",
+                    grpcClientCommandLineParser.getReconnectStrategyType(), grpcClientCommandLineParser.getBackoffPolicyType());
+
+            reconnectStrategy = createReconnectStrategy(channel, this::handleConnect, this::handleDisconnect);
+            reconnectStrategy.activate();
+        }
 
-        commonChannelSetup(channelBuilder);
+        serviceStub = TestServiceGrpc.newStub(channelPool);
+        primaryStub = TestServiceGrpc.newStub(channel);
+        futureStub = TestServiceGrpc.newFutureStub(channelPool);
     }
 
-    private void commonChannelSetup(ManagedChannelBuilder channelBuilder) {
-        channel = channelBuilder.usePlaintext().build();
+    private void shutdownChannels() throws InterruptedException {
+        if (reconnectStrategy != null) {
+            reconnectStrategy.deactivate();
+        }
 
-        if (grpcClientCommandLineParser.isEnableReconnectStrategy()) {
-            LOG.info("STARTING RECONNECT STRATEGY");
-            int reconnectRate = grpcClientCommandLineParser.getReconnectRate();
-            int maxReconnectAttempts = grpcClientCommandLineParser.getMaxReconnectAttempts();
-
-            simpleReconnectStrategy =
-                    new SimpleReconnectStrategy(
-                            channel,
-                            this::handleConnect,
-                            this::handleDisconnect,
-                            reconnectRate,
-                            maxReconnectAttempts
-                    );
+        if (channelPool != null) {
+            channelPool.shutdown();
+            channelPool.awaitTermination(5, TimeUnit.SECONDS);
+        }
 
-            simpleReconnectStrategy.activate();
+        for (NioEventLoopGroup eventLoopGroup : eventLoopGroups) {
+            eventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
         }
+    }
 
-        serviceStub = TestServiceGrpc.newStub(channel);
+    private ReconnectStrategy createReconnectStrategy(ManagedChannel channel, Runnable onConnect, Runnable onDisconnect) {
+        BackoffPolicy backoffPolicy = createBackoffPolicy();
+        int maxReconnectAttempts = grpcClientCommandLineParser.getMaxReconnectAttempts();
+
+        return switch (grpcClientCommandLineParser.getReconnectStrategyType()) {
+            case SIMPLE ->
+                    new SimpleReconnectStrategy(reconnectScheduler, channel, onConnect, onDisconnect, backoffPolicy, maxReconnectAttempts,
+                            lifecycleJournalService.getJournal());
+            case STATE_CHANGE ->
+                    new StateChangeReconnectStrategy(reconnectScheduler, channel, onConnect, onDisconnect, backoffPolicy, maxReconnectAttempts);
+        };
+    }
+
+    private BackoffPolicy createBackoffPolicy() {
+        int baseDelay = grpcClientCommandLineParser.getReconnectRate();
+        int maxDelay = grpcClientCommandLineParser.getBackoffMax();
+
+        return switch (grpcClientCommandLineParser.getBackoffPolicyType()) {
+            case FIXED -> new FixedBackoffPolicy(baseDelay);
+            case EXPONENTIAL -> new ExponentialBackoffPolicy(baseDelay, maxDelay);
+            case DECORRELATED_JITTER -> new DecorrelatedJitterBackoffPolicy(baseDelay, maxDelay);
+        };
     }
 
     private void concurrentCheckCallChannelGetState() {
@@ -230,36 +439,98 @@ public class GrpcClientCommandLineRunner {
         this.executorService.submit(() -> this.executeClient(iteration));
     }
 
+    /**
+     * Never blocks on a response, only on the in-flight limit; the permit is returned by the completion callback,
+     *  which runs directly on the thread completing the call.
+     */
+    private void executeClientPipelined(int iteration) throws InterruptedException {
+        inFlightPermits.acquire();
+
+        StreamObserver<TestResponse> responseObserver = streamMetrics.observer("test-response");
+        ListenableFuture<TestResponse> future;
+        try {
+            future = futureStub.request(TestRequest.newBuilder().setQuery("test-query #" + iteration).build());
+        } catch (RuntimeException rtExc) {
+            inFlightPermits.release();
+            throw rtExc;
+        }
+
+        Futures.addCallback(future, new FutureCallback<>() {
+            @Override
+            public void onSuccess(TestResponse response) {
+                inFlightPermits.release();
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                inFlightPermits.release();
+                responseObserver.onError(t);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void awaitPipelineDrained(int numRequests, long startNanos) throws InterruptedException {
+        int maxInFlight = grpcClientCommandLineParser.getMaxInFlight();
+        int shutdownDelay = grpcClientCommandLineParser.getShutdownDelay();
+
+        if (inFlightPermits.tryAcquire(maxInFlight, shutdownDelay, TimeUnit.MILLISECONDS)) {
+            inFlightPermits.release(maxInFlight);
+
+            double seconds = (double) (System.nanoTime() - startNanos) / 1_000_000_000.0;
+            LOG.info("PIPELINE: {} request(s) completed in {}s ({} requests/s) with at most {} in flight",
+                    numRequests, String.format("%.3f", seconds), String.format("%.0f", numRequests / seconds), maxInFlight);
+        } else {
+            LOG.warn("PIPELINE: {} of {} request(s) still in flight after {}ms",
+                    maxInFlight - inFlightPermits.availablePermits(), numRequests, shutdownDelay);
+        }
+    }
+
     private void executeClient(int iteration) {
         LOG.info("CLIENT EXECUTION - STARTING");
         serviceStub.request(
                 TestRequest.newBuilder().setQuery("test-query #" + iteration).build(),
-                this.loggingStreamObserver
+                streamMetrics.<TestResponse>observer("test-response")
         );
         LOG.info("CLIENT EXECUTION - COMPLETED");
     }
 
     private void setupMinionToCloudStream() {
         // Don't expect and responses...
-        minionToCloudStream = serviceStub.minionToCloudMessages(new LoggingStreamObserver<>("MINION-TO-CLOUD-RESPONSE"));
+        minionToCloudStream = minionToCloudStreamFactory.open(primaryStub, streamMetrics.observer("MINION-TO-CLOUD-RESPONSE"), minionToCloudSendQueue);
         minionToCloudStream.onNext(
                 TestRequest.newBuilder().setQuery("SETUP-MINION-TO-CLOUD-QUERY").build()
         );
         LOG.info("Initialized RPC stream");
     }
 
+    private void setupCloudToMinionStream() {
+        cloudToMinionMessageHandler = new CloudToMinionMessageHandler(minionId);
+        cloudToMinionMessageHandler.start(primaryStub);
+    }
+
     private void handleConnect() {
         LOG.warn("Connection started");
+        lifecycleJournalService.getJournal().record(LifecycleEvent.CONNECTED, 0, 0, minionId);
+
+        // The load test measures its own requests only; stream traffic on the same channel would skew it
+        if (grpcClientCommandLineParser.getTestOperation() == GrpcTestOperation.LOAD_TEST) {
+            return;
+        }
+
         this.setupMinionToCloudStream();
+        this.setupCloudToMinionStream();
 
-        serviceStub.request(
+        primaryStub.request(
                 TestRequest.newBuilder().setQuery("ON-CONNECT-REQUEST").build(),
-                this.loggingStreamObserver
+                streamMetrics.<TestResponse>observer("test-response")
         );
     }
 
     private void handleDisconnect() {
         LOG.warn("Connection dropped");
+        lifecycleJournalService.getJournal().record(LifecycleEvent.DISCONNECTED, 0, 0, minionId);
     }
 
     private void delay(long ms) {
@@ -29,31 +29,37 @@
 
 package org.opennms.poc.hs1384.client;
 
-import io.grpc.stub.StreamObserver;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.ArrayDeque;
 
-public class LoggingStreamObserver<T> implements StreamObserver<T> {
-    private static final Logger LOG = LoggerFactory.getLogger(LoggingStreamObserver.class);
+/**
+ * Bounded in-heap {@link SpillQueue}: a larger, cheaper second tier behind a small send queue.
+ */
+public class HeapSpillQueue<T> implements SpillQueue<T> {
 
-    private final String label;
+    private final int capacity;
+    private final ArrayDeque<T> messages = new ArrayDeque<>();
 
-    public LoggingStreamObserver(String label) {
-        this.label = label;
+    public HeapSpillQueue(int capacity) {
+        this.capacity = capacity;
     }
 
     @Override
-    public void onNext(T value) {
-        LOG.info("STREAM {} NEXT VALUE: {}", this.label, value);
+    public boolean offer(T message) {
+        if (messages.size() >= capacity) {
+            return false;
+        }
+
+        messages.add(message);
+        return true;
     }
 
     @Override
-    public void onError(Throwable t) {
-        LOG.error("STREAM {} ERROR", this.label, t);
+    public T poll() {
+        return messages.poll();
     }
 
     @Override
-    public void onCompleted() {
-        LOG.info("STREAM {} COMPLETED", this.label);
+    public long size() {
+        return messages.size();
     }
 }
@@ -0,0 +1,250 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import io.grpc.netty.shaded.io.netty.util.internal.PlatformDependent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+/**
+ * Disk-backed {@link SpillQueue}: an append log of length-prefixed protobuf records in fixed-size, memory-mapped
+ *  segment files.  Appends and reads are plain memory copies into and out of the mapping; the page cache does the I/O.
+ *
+ * Disk usage is bounded by maxSegments * segmentBytes: a fully-read segment is kept mapped as the one spare for the
+ *  next write segment, instead of being deleted and re-mapped; any other fully-read segment is unmapped and deleted,
+ *  so the log shrinks back after a long outage.  An offer that needs a segment beyond the limit is refused.  The log
+ *  is a buffer for outages, not a journal -- segments left by a previous run are deleted, not replayed.
+ *
+ * Mappings are released explicitly (through Netty's cleaner access) rather than left to the GC, which would keep
+ *  the address space and the deleted files' disk blocks until it gets around to the buffers.
+ *
+ * Not thread-safe; callers serialize access (see {@link FlowControlledStreamObserver}).
+ */
+public class MappedSpillLog<T extends MessageLite> implements SpillQueue<T>, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedSpillLog.class);
+
+    private static final String SEGMENT_GLOB = "spill-*.log";
+    private static final int LENGTH_PREFIX_BYTES = Integer.BYTES;
+
+    private final Path directory;
+    private final Parser<T> parser;
+    private final int segmentBytes;
+    private final int maxSegments;
+
+    // Oldest first; the last one is being written
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final ArrayDeque<Segment> freeSegments = new ArrayDeque<>();
+    private int segmentCount;
+    private long nextSegmentId;
+    private long size;
+
+    public MappedSpillLog(Path directory, Parser<T> parser, int segmentBytes, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.parser = parser;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, SEGMENT_GLOB)) {
+            for (Path leftover : leftovers) {
+                Files.delete(leftover);
+            }
+        }
+    }
+
+    @Override
+    public boolean offer(T message) {
+        int length = message.getSerializedSize();
+        int recordBytes = LENGTH_PREFIX_BYTES + length;
+        if (recordBytes > segmentBytes) {
+            return false;
+        }
+
+        Segment tail = segments.peekLast();
+        if ((tail == null) || (segmentBytes - tail.writePosition < recordBytes)) {
+            tail = nextWriteSegment();
+            if (tail == null) {
+                return false;
+            }
+        }
+
+        tail.buffer.putInt(tail.writePosition, length);
+        try {
+            CodedOutputStream output = CodedOutputStream.newInstance(tail.buffer.slice(tail.writePosition + LENGTH_PREFIX_BYTES, length));
+            message.writeTo(output);
+            output.flush();
+        } catch (IOException ioExc) {
+            LOG.warn("Failed to write spill record to {}", tail.path, ioExc);
+            return false;
+        }
+
+        tail.writePosition += recordBytes;
+        size++;
+        return true;
+    }
+
+    @Override
+    public T poll() {
+        if (size == 0) {
+            return null;
+        }
+
+        Segment head = segments.peekFirst();
+        int length = head.buffer.getInt(head.readPosition);
+        T message;
+        try {
+            message = parser.parseFrom(head.buffer.slice(head.readPosition + LENGTH_PREFIX_BYTES, length));
+        } catch (InvalidProtocolBufferException ipbExc) {
+            throw new IllegalStateException("corrupt spill record in " + head.path, ipbExc);
+        }
+
+        head.readPosition += LENGTH_PREFIX_BYTES + length;
+        size--;
+
+        if (head.readPosition == head.writePosition) {
+            if (segments.size() == 1) {
+                // Rewind an emptied write segment in place, so a short outage never grows past one segment
+                head.reset();
+            } else {
+                // Fully read, and no longer written: keep it as the spare, or release it
+                segments.pollFirst();
+                if (freeSegments.isEmpty()) {
+                    head.reset();
+                    freeSegments.add(head);
+                } else {
+                    release(head);
+                }
+            }
+        }
+
+        return message;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return bytes of segment files currently mapped, whether in use or free.
+     */
+    public long getMappedBytes() {
+        return (long) segmentCount * segmentBytes;
+    }
+
+    /**
+     * Discard the log and delete its segment files.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Segment segment : segments) {
+            release(segment);
+        }
+        for (Segment segment : freeSegments) {
+            release(segment);
+        }
+
+        segments.clear();
+        freeSegments.clear();
+        size = 0;
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private Segment nextWriteSegment() {
+        Segment segment = freeSegments.poll();
+
+        if (segment == null) {
+            if (segmentCount >= maxSegments) {
+                return null;
+            }
+
+            // Never reuse the name of a released segment: a lower count does not mean the higher names are free
+            Path path = directory.resolve("spill-" + nextSegmentId++ + ".log");
+            try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The mapping stays valid after the channel is closed
+                segment = new Segment(path, fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+            } catch (IOException ioExc) {
+                LOG.warn("Failed to map spill segment {}", path, ioExc);
+                return null;
+            }
+
+            segmentCount++;
+        }
+
+        segments.add(segment);
+        return segment;
+    }
+
+    private void release(Segment segment) {
+        PlatformDependent.freeDirectBuffer(segment.buffer);
+        segmentCount--;
+
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException ioExc) {
+            LOG.warn("Failed to delete spill segment {}", segment.path, ioExc);
+        }
+    }
+
+    private static class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int readPosition;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        private void reset() {
+            writePosition = 0;
+            readPosition = 0;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import org.opennms.poc.hs1384.census.TransportCensus;
+import org.opennms.poc.hs1384.compression.MessageCompression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a fleet of simulated Minions in one JVM, each with its own channel, reconnect strategy and streams, all sharing
+ *  one Netty event-loop group, one reconnect scheduler and one heartbeat thread.  Periodically reports channel states
+ *  and the process CPU and heap cost per Minion.
+ *
+ * GC is never forced: the per-Minion heap figure uses the heap in use after the JVM's most recent collection (the
+ *  current usage until the first one), so it approximates the retained size without adding pauses or CPU to the run.
+ */
+public class MinionFleetSimulator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MinionFleetSimulator.class);
+
+    private static final long REPORT_PERIOD_MS = 10_000;
+
+    private final String host;
+    private final int port;
+    private final String minionIdPrefix;
+    private final int fleetSize;
+    private final int numEventLoops;
+    private final long heartbeatPeriodMs;
+    private final ReconnectStrategyFactory reconnectStrategyFactory;
+    private final MinionToCloudStreamFactory minionToCloudStreamFactory;
+    private final MessageCompression messageCompression;
+    private final TransportCensus census;
+
+    private final List<SimulatedMinion> minions = new ArrayList<>();
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private EventLoopGroup eventLoopGroup;
+    private ScheduledExecutorService heartbeatExecutor;
+
+    private long baselineHeapBytes;
+    private long lastReportNanos;
+    private long lastReportCpuNanos;
+
+    /**
+     * @param numEventLoops event-loop threads shared by all channels; 0 => Netty's default (2 x cores).
+     * @param heartbeatPeriodMs period of the minion-to-cloud heartbeats; 0 => no heartbeats.
+     */
+    public MinionFleetSimulator(String host, int port, String minionIdPrefix, int fleetSize, int numEventLoops,
+                                long heartbeatPeriodMs, ReconnectStrategyFactory reconnectStrategyFactory,
+                                MinionToCloudStreamFactory minionToCloudStreamFactory, MessageCompression messageCompression,
+                                TransportCensus census) {
+        this.host = host;
+        this.port = port;
+        this.minionIdPrefix = minionIdPrefix;
+        this.fleetSize = fleetSize;
+        this.numEventLoops = numEventLoops;
+        this.heartbeatPeriodMs = heartbeatPeriodMs;
+        this.reconnectStrategyFactory = reconnectStrategyFactory;
+        this.minionToCloudStreamFactory = minionToCloudStreamFactory;
+        this.messageCompression = messageCompression;
+        this.census = census;
+    }
+
+    /**
+     * Start the fleet, report every {@value #REPORT_PERIOD_MS}ms for the given duration, then shut the fleet down.
+     */
+    public void run(long durationMs) throws InterruptedException, IOException {
+        baselineHeapBytes = getHeapAfterLastGcBytes();
+        lastReportNanos = System.nanoTime();
+        lastReportCpuNanos = getProcessCpuNanos();
+
+        start();
+
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMs);
+        long remaining;
+        while ((remaining = end - System.nanoTime()) > 0) {
+            Thread.sleep(Math.min(REPORT_PERIOD_MS, TimeUnit.NANOSECONDS.toMillis(remaining) + 1));
+            report();
+        }
+
+        shutdown();
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void start() throws IOException {
+        eventLoopGroup = new NioEventLoopGroup(
+                numEventLoops,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("fleet-event-loop-%d").build()
+        );
+
+        for (int cur = 0; cur < fleetSize; cur++) {
+            ManagedChannel channel =
+                    NettyChannelBuilder.forAddress(host, port)
+                            .eventLoopGroup(eventLoopGroup)
+                            .channelFactory(() -> new CensusNioSocketChannel(census))
+                            .keepAliveWithoutCalls(true)
+                            .idleTimeout(1_000, TimeUnit.MILLISECONDS)
+                            .maxInboundMessageSize(1_000_000)
+                            .compressorRegistry(messageCompression.getCompressorRegistry())
+                            .decompressorRegistry(messageCompression.getDecompressorRegistry())
+                            .intercept(messageCompression)
+                            .usePlaintext()
+                            .build();
+
+            SimulatedMinion minion = new SimulatedMinion(minionIdPrefix + "-" + cur, channel, reconnectStrategyFactory, minionToCloudStreamFactory);
+            minions.add(minion);
+            minion.start();
+        }
+
+        LOG.info("FLEET STARTED: {} minion(s) against {}:{}; heap used before start {} MB",
+                fleetSize, host, port, baselineHeapBytes / (1024 * 1024));
+
+        if (heartbeatPeriodMs > 0) {
+            heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("fleet-heartbeat-%d").build()
+            );
+            heartbeatExecutor.scheduleAtFixedRate(this::sendHeartbeats, heartbeatPeriodMs, heartbeatPeriodMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void shutdown() throws InterruptedException {
+        LOG.info("FLEET SHUTDOWN: stopping {} minion(s)", minions.size());
+
+        if (heartbeatExecutor != null) {
+            heartbeatExecutor.shutdownNow();
+        }
+
+        minions.forEach(SimulatedMinion::shutdown);
+        for (SimulatedMinion minion : minions) {
+            minion.awaitTermination(5, TimeUnit.SECONDS);
+        }
+
+        eventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).await(5, TimeUnit.SECONDS);
+        minionToCloudStreamFactory.shutdown();
+    }
+
+    private void sendHeartbeats() {
+        for (SimulatedMinion minion : minions) {
+            try {
+                minion.sendHeartbeat();
+            } catch (RuntimeException rtExc) {
+                LOG.debug("Heartbeat for minion {} failed", minion.getMinionId(), rtExc);
+            }
+        }
+    }
+
+    private void report() {
+        Map<ConnectivityState, Integer> states = new EnumMap<>(ConnectivityState.class);
+        long streaming = 0;
+        long connects = 0;
+        long heartbeats = 0;
+        long skippedHeartbeats = 0;
+        for (SimulatedMinion minion : minions) {
+            states.merge(minion.getChannel().getState(false), 1, Integer::sum);
+            if (minion.isStreaming()) {
+                streaming++;
+            }
+            connects += minion.getConnectCount();
+            heartbeats += minion.getHeartbeatCount();
+            skippedHeartbeats += minion.getSkippedHeartbeatCount();
+        }
+
+        long now = System.nanoTime();
+        long cpuNanos = getProcessCpuNanos();
+        double cores = (double) (cpuNanos - lastReportCpuNanos) / (double) (now - lastReportNanos);
+        lastReportNanos = now;
+        lastReportCpuNanos = cpuNanos;
+
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long heapAfterGc = getHeapAfterLastGcBytes();
+        long heapPerMinion = (heapAfterGc - baselineHeapBytes) / fleetSize;
+
+        LOG.info("FLEET REPORT: minions={} states={} streaming={} connects={} heartbeats={} skipped-heartbeats={} live-transports={} " +
+                        "send-queue=[{}] compression=[{}] cpu-cores={} cpu-micros/s-per-minion={} heap-used={}MB heap-after-gc={}MB heap-per-minion={}B threads={}",
+                fleetSize, states, streaming, connects, heartbeats, skippedHeartbeats, census.getLiveCount(), minionToCloudStreamFactory.getSendQueueMetrics(), messageCompression,
+                String.format("%.3f", cores), String.format("%.1f", (cores * 1_000_000.0) / fleetSize),
+                heapUsed / (1024 * 1024), heapAfterGc / (1024 * 1024), heapPerMinion, threadMXBean.getThreadCount());
+    }
+
+    /**
+     * @return heap in use right after the most recent GC, summed over the heap pools; the current usage if no GC ran yet.
+     */
+    private long getHeapAfterLastGcBytes() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage afterGc = pool.getCollectionUsage();
+            if ((pool.getType() == MemoryType.HEAP) && (afterGc != null)) {
+                used += afterGc.getUsed();
+            }
+        }
+
+        if (used == 0) {
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+
+        return used;
+    }
+
+    private long getProcessCpuNanos() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean osMXBean) {
+            return osMXBean.getProcessCpuTime();
+        }
+
+        return 0;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import com.google.protobuf.Empty;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import org.opennms.poc.hs1384.grpc.TestRequest;
+import org.opennms.poc.hs1384.grpc.TestRequestBatch;
+import org.opennms.poc.hs1384.grpc.TestServiceGrpc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+
+/**
+ * Opens minion-to-cloud streams: one stream message per TestRequest when maxBatchSize is 1, otherwise a
+ *  MinionToCloudBatches stream behind a {@link BatchingStreamObserver}.  Unless sendQueueSize is 0, each Minion sends
+ *  through one {@link FlowControlledStreamObserver} that is re-attached to every stream it opens, so messages sent
+ *  while disconnected are replayed on the next connect; all send queues share one {@link SendQueueMetrics}.
+ *
+ * With the SPILL overflow policy, each send queue spills to a {@link MappedSpillLog} under spillDirectory/minion-id
+ *  when spillDirectory is set, and to a {@link HeapSpillQueue} otherwise.
+ */
+public class MinionToCloudStreamFactory {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MinionToCloudStreamFactory.class);
+
+    /**
+     * Longest a sender waits for room under {@link OverflowPolicy#BLOCK}, so a dead connection cannot hang it forever.
+     */
+    public static final long BLOCK_TIMEOUT_MS = 5_000;
+
+    public static final int MAX_SPILL_SEGMENT_BYTES = 4 * 1024 * 1024;
+
+    private final int maxBatchSize;
+    private final long maxDelayMs;
+    private final ScheduledExecutorService flushScheduler;
+    private final int sendQueueSize;
+    private final OverflowPolicy overflowPolicy;
+    private final int spillCapacity;
+    private final Path spillDirectory;
+    private final long spillDiskLimitBytes;
+
+    private final SendQueueMetrics sendQueueMetrics = new SendQueueMetrics();
+    private final List<MappedSpillLog<TestRequest>> spillLogs = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param spillDirectory null => spill to the heap.
+     * @param spillDiskLimitBytes bound on the segment files of each Minion's spill log.
+     */
+    public MinionToCloudStreamFactory(int maxBatchSize, long maxDelayMs, ScheduledExecutorService flushScheduler,
+                                      int sendQueueSize, OverflowPolicy overflowPolicy, int spillCapacity,
+                                      Path spillDirectory, long spillDiskLimitBytes) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMs = maxDelayMs;
+        this.flushScheduler = flushScheduler;
+        this.sendQueueSize = sendQueueSize;
+        this.overflowPolicy = overflowPolicy;
+        this.spillCapacity = spillCapacity;
+        this.spillDirectory = spillDirectory;
+        this.spillDiskLimitBytes = spillDiskLimitBytes;
+    }
+
+    public boolean isBatching() {
+        return maxBatchSize > 1;
+    }
+
+    public boolean isFlowControlled() {
+        return sendQueueSize > 0;
+    }
+
+    public SendQueueMetrics getSendQueueMetrics() {
+        return sendQueueMetrics;
+    }
+
+    /**
+     * @return the Minion's send queue, to pass to every {@link #open}; null if not flow controlled.
+     */
+    public FlowControlledStreamObserver<TestRequest> createSendQueue(String minionId) throws IOException {
+        if (! isFlowControlled()) {
+            return null;
+        }
+
+        SpillQueue<TestRequest> spill = null;
+        if (overflowPolicy == OverflowPolicy.SPILL) {
+            if (spillDirectory != null) {
+                int segmentBytes = (int) Math.min(MAX_SPILL_SEGMENT_BYTES, Math.max(spillDiskLimitBytes / 2, 1_024));
+                int maxSegments = (int) Math.max(1, spillDiskLimitBytes / segmentBytes);
+
+                MappedSpillLog<TestRequest> spillLog =
+                        new MappedSpillLog<>(spillDirectory.resolve(minionId), TestRequest.parser(), segmentBytes, maxSegments);
+                spillLogs.add(spillLog);
+                spill = spillLog;
+            } else {
+                spill = new HeapSpillQueue<>(spillCapacity);
+            }
+        }
+
+        return new FlowControlledStreamObserver<>(sendQueueSize, overflowPolicy, BLOCK_TIMEOUT_MS, spill, sendQueueMetrics);
+    }
+
+    /**
+     * Open a new stream.  With a send queue, the queue is attached to the stream -- replaying what it holds -- and
+     *  returned; it stays valid after the stream ends.
+     */
+    public StreamObserver<TestRequest> open(TestServiceGrpc.TestServiceStub serviceStub, StreamObserver<Empty> responseObserver,
+                                            FlowControlledStreamObserver<TestRequest> sendQueue) {
+        if (sendQueue == null) {
+            if (! isBatching()) {
+                return serviceStub.minionToCloudMessages(responseObserver);
+            }
+
+            UnqueuedBatchResponseObserver batchResponseObserver = new UnqueuedBatchResponseObserver(responseObserver);
+            serviceStub.minionToCloudBatches(batchResponseObserver);
+            return batchResponseObserver.batchingStage;
+        }
+
+        // Flow control sits in front of the batching stage, so the queue and the spill hold messages, not batches
+        if (! isBatching()) {
+            serviceStub.minionToCloudMessages(sendQueue.responseObserver(responseObserver, Function.identity()));
+        } else {
+            serviceStub.minionToCloudBatches(sendQueue.responseObserver(responseObserver, this::createBatchingStage));
+        }
+
+        return sendQueue;
+    }
+
+    /**
+     * Delete the spill logs' segment files.
+     */
+    public void shutdown() {
+        for (MappedSpillLog<TestRequest> spillLog : spillLogs) {
+            try {
+                spillLog.close();
+            } catch (IOException ioExc) {
+                LOG.warn("Failed to delete spill log", ioExc);
+            }
+        }
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private BatchingStreamObserver createBatchingStage(StreamObserver<TestRequestBatch> batchStream) {
+        return new BatchingStreamObserver(batchStream, maxBatchSize, maxDelayMs, flushScheduler);
+    }
+
+    /**
+     * Abandons the batching stage of a stream without a send queue once the stream ends, so its flush timer does not
+     *  fire on the dead call; with no queue to return them to, the unsent messages are lost.
+     */
+    private class UnqueuedBatchResponseObserver implements ClientResponseObserver<TestRequestBatch, Empty> {
+        private final StreamObserver<Empty> delegate;
+        private BatchingStreamObserver batchingStage;
+
+        private UnqueuedBatchResponseObserver(StreamObserver<Empty> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<TestRequestBatch> requestStream) {
+            batchingStage = createBatchingStage(requestStream);
+        }
+
+        @Override
+        public void onNext(Empty value) {
+            delegate.onNext(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            batchingStage.abandon();
+            delegate.onError(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            batchingStage.abandon();
+            delegate.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import io.grpc.stub.StreamObserver;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.opennms.poc.hs1384.grpc.TestRequest;
+import org.opennms.poc.hs1384.grpc.TestResponse;
+import org.opennms.poc.hs1384.grpc.TestServiceGrpc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator: issues unary requests at a constant target rate, split across concurrency sender threads
+ *  ("lanes") with interleaved schedules, whether or not earlier requests have completed.
+ *
+ * Latency is measured from the time each request was scheduled to be sent, not from when it actually was, so a stall
+ *  (in the server, the network or the sender itself) counts against every request it delayed -- the
+ *  coordinated-omission correction.  The service time, from the actual send, is recorded as well; the gap between the
+ *  two shows how far the sender fell behind.  Both are reported as p50/p99/p99.9/max every reporting interval and for
+ *  the whole run.
+ *
+ * Failed requests are recorded too, at the time they failed, and requests still outstanding at the end of the drain
+ *  are recorded as timed out at the drain deadline, so neither can flatter the percentiles; both are also counted.
+ */
+public class OpenLoopLoadGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OpenLoopLoadGenerator.class);
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final long DRAIN_TIMEOUT_MS = 5_000;
+
+    private final TestServiceGrpc.TestServiceStub stub;
+    private final int targetRate;
+    private final int concurrency;
+    private final long durationMs;
+    private final long reportIntervalMs;
+
+    private final Recorder latencyRecorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Recorder serviceTimeRecorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Histogram totalLatency = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram totalServiceTime = new Histogram(SIGNIFICANT_DIGITS);
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final Set<ResponseRecorder> outstanding = ConcurrentHashMap.newKeySet();
+
+    private Histogram intervalLatency;
+    private Histogram intervalServiceTime;
+    private long lastReportNanos;
+    private long lastReportCompleted;
+
+    /**
+     * @param targetRate requests per second, across all lanes.
+     * @param concurrency number of sender threads sharing the rate.
+     */
+    public OpenLoopLoadGenerator(TestServiceGrpc.TestServiceStub stub, int targetRate, int concurrency, long durationMs, long reportIntervalMs) {
+        this.stub = stub;
+        this.targetRate = targetRate;
+        this.concurrency = concurrency;
+        this.durationMs = durationMs;
+        this.reportIntervalMs = reportIntervalMs;
+    }
+
+    /**
+     * Generate the load for the duration, reporting every interval, then wait (bounded) for the outstanding requests
+     *  and report the totals.
+     */
+    public void run() throws InterruptedException {
+        warmUp();
+
+        LOG.info("LOAD STARTING: {} requests/s across {} lane(s) for {}ms", targetRate, concurrency, durationMs);
+
+        long periodNanos = (1_000_000_000L * concurrency) / targetRate;
+        long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        long endNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(durationMs);
+
+        List<Thread> lanes = new ArrayList<>();
+        for (int lane = 0; lane < concurrency; lane++) {
+            long laneStartNanos = startNanos + ((periodNanos * lane) / concurrency);
+
+            Thread thread = new Thread(() -> runLane(laneStartNanos, periodNanos, endNanos), "load-lane-" + lane);
+            thread.setDaemon(true);
+            thread.start();
+            lanes.add(thread);
+        }
+
+        lastReportNanos = startNanos;
+        long nextReportNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(reportIntervalMs);
+        while (nextReportNanos - endNanos < 0) {
+            sleepUntil(nextReportNanos);
+            report();
+            nextReportNanos += TimeUnit.MILLISECONDS.toNanos(reportIntervalMs);
+        }
+
+        for (Thread lane : lanes) {
+            lane.join();
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DRAIN_TIMEOUT_MS);
+        while ((! outstanding.isEmpty()) && (System.nanoTime() - drainDeadline < 0)) {
+            Thread.sleep(10);
+        }
+
+        for (ResponseRecorder recorder : outstanding) {
+            recorder.timeOut(drainDeadline);
+        }
+
+        report();
+        LOG.info("LOAD TOTAL: sent={} completed={} failed={} timed-out={} achieved-rate={}/s latency=[{}] service-time=[{}]",
+                sent.sum(), completed.sum(), failed.sum(), timedOut.sum(),
+                String.format("%.1f", (double) completed.sum() * 1_000.0 / (double) durationMs),
+                format(totalLatency), format(totalServiceTime));
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    /**
+     * One request first, so the connection is established before the clock starts.
+     */
+    private void warmUp() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        stub.request(TestRequest.newBuilder().setQuery("load-warm-up").build(), new StreamObserver<>() {
+            @Override
+            public void onNext(TestResponse value) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                LOG.warn("Load warm-up request failed", t);
+                done.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                done.countDown();
+            }
+        });
+
+        done.await(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void runLane(long laneStartNanos, long periodNanos, long endNanos) {
+        TestRequest request = TestRequest.newBuilder().setQuery("load-" + Thread.currentThread().getName()).build();
+
+        for (long intendedNanos = laneStartNanos; intendedNanos - endNanos < 0; intendedNanos += periodNanos) {
+            // Never skip or delay the schedule: a late request is sent immediately and its wait counts as latency
+            sleepUntil(intendedNanos);
+
+            ResponseRecorder recorder = new ResponseRecorder(intendedNanos, System.nanoTime());
+            outstanding.add(recorder);
+            sent.increment();
+            stub.request(request, recorder);
+        }
+    }
+
+    private void sleepUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * Only called from the reporting (run) thread.
+     */
+    private void report() {
+        intervalLatency = latencyRecorder.getIntervalHistogram(intervalLatency);
+        intervalServiceTime = serviceTimeRecorder.getIntervalHistogram(intervalServiceTime);
+        totalLatency.add(intervalLatency);
+        totalServiceTime.add(intervalServiceTime);
+
+        long now = System.nanoTime();
+        long completedCount = completed.sum();
+        double rate = (double) (completedCount - lastReportCompleted) * 1_000_000_000.0 / (double) Math.max(1, now - lastReportNanos);
+        lastReportNanos = now;
+        lastReportCompleted = completedCount;
+
+        LOG.info("LOAD INTERVAL: sent={} completed={} failed={} timed-out={} rate={}/s latency=[{}] service-time=[{}]",
+                sent.sum(), completedCount, failed.sum(), timedOut.sum(),
+                String.format("%.1f", rate),
+                format(intervalLatency), format(intervalServiceTime));
+    }
+
+    private static String format(Histogram histogram) {
+        return String.format("count=%d p50=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50.0) / 1_000_000.0,
+                histogram.getValueAtPercentile(99.0) / 1_000_000.0,
+                histogram.getValueAtPercentile(99.9) / 1_000_000.0,
+                histogram.getMaxValue() / 1_000_000.0);
+    }
+
+    private class ResponseRecorder implements StreamObserver<TestResponse> {
+        private final long intendedNanos;
+        private final long sentNanos;
+
+        private ResponseRecorder(long intendedNanos, long sentNanos) {
+            this.intendedNanos = intendedNanos;
+            this.sentNanos = sentNanos;
+        }
+
+        @Override
+        public void onNext(TestResponse value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (record(System.nanoTime())) {
+                failed.increment();
+            }
+            LOG.debug("Load request failed", t);
+        }
+
+        @Override
+        public void onCompleted() {
+            if (record(System.nanoTime())) {
+                completed.increment();
+            }
+        }
+
+        private void timeOut(long deadlineNanos) {
+            if (record(deadlineNanos)) {
+                timedOut.increment();
+            }
+        }
+
+        /**
+         * @return false => already recorded, by the response or by the drain timing it out.
+         */
+        private boolean record(long endNanos) {
+            if (! outstanding.remove(this)) {
+                return false;
+            }
+
+            latencyRecorder.recordValue(Math.max(0, endNanos - intendedNanos));
+            serviceTimeRecorder.recordValue(Math.max(0, endNanos - sentNanos));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded scheduler shared by every {@link ReconnectStrategy} in the JVM, so thousands of channels cost a fixed
+ *  number of threads instead of one thread per channel.
+ *
+ * Each strategy registers on activation and deregisters on deactivation; deregistering cancels all of its pending
+ *  tasks.  Tasks must not block, since they share the scheduler threads.
+ */
+@Component
+public class ReconnectScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReconnectScheduler.class);
+
+    @Value("${reconnect.scheduler-threads:2}")
+    private int numThreads = 2;
+
+    private final Set<Registration> registrations = ConcurrentHashMap.newKeySet();
+
+    private ScheduledThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        executor = new ScheduledThreadPoolExecutor(
+                numThreads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("reconnect-scheduler-%d").build()
+        );
+        executor.setRemoveOnCancelPolicy(true);
+
+        LOG.info("Started reconnect scheduler with {} thread(s)", numThreads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        registrations.forEach(Registration::deregister);
+        executor.shutdownNow();
+    }
+
+    public Registration register(String name) {
+        Registration registration = new Registration(name);
+        registrations.add(registration);
+
+        return registration;
+    }
+
+    public int getRegistrationCount() {
+        return registrations.size();
+    }
+
+    public int getPendingTaskCount() {
+        return executor.getQueue().size();
+    }
+
+//========================================
+// Registration
+//----------------------------------------
+
+    public final class Registration {
+        private final String name;
+        private final Set<Task> pending = ConcurrentHashMap.newKeySet();
+
+        private volatile boolean deregistered;
+
+        private Registration(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the scheduled task, or null if the registration has been deregistered.
+         */
+        public ScheduledFuture<?> schedule(Runnable runnable, long delay, TimeUnit unit) {
+            if (deregistered) {
+                return null;
+            }
+
+            Task task = new Task(this, runnable);
+            pending.add(task);
+            task.future = executor.schedule(task, delay, unit);
+
+            // Deregistration may have raced with the add
+            if (deregistered) {
+                task.future.cancel(false);
+            }
+
+            return task.future;
+        }
+
+        public void deregister() {
+            deregistered = true;
+            registrations.remove(this);
+
+            for (Task task : pending) {
+                if (task.future != null) {
+                    task.future.cancel(false);
+                }
+            }
+            pending.clear();
+        }
+    }
+
+    private static final class Task implements Runnable {
+        private final Registration registration;
+        private final Runnable runnable;
+
+        private volatile ScheduledFuture<?> future;
+
+        private Task(Registration registration, Runnable runnable) {
+            this.registration = registration;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            registration.pending.remove(this);
+            if (registration.deregistered) {
+                return;
+            }
+
+            try {
+                runnable.run();
+            } catch (RuntimeException rtExc) {
+                LOG.error("Reconnect task for {} failed", registration.name, rtExc);
+            }
+        }
+    }
+}
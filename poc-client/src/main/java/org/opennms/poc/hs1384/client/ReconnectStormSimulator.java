@@ -0,0 +1,123 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.PriorityQueue;
+
+/**
+ * Discrete-event simulation of a fleet of clients that all lose their connection at the same instant (e.g. the cloud
+ *  gateway restarts), reporting the reconnect request rate the server sees under a given backoff policy.
+ *
+ * Every attempt made before the outage ends fails; the first attempt at or after the end of the outage succeeds.
+ */
+public class ReconnectStormSimulator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReconnectStormSimulator.class);
+
+    private static final int BUCKET_MS = 100;
+
+    private final BackoffPolicy backoffPolicy;
+    private final int numClients;
+    private final long outageMs;
+
+    public ReconnectStormSimulator(BackoffPolicy backoffPolicy, int numClients, long outageMs) {
+        this.backoffPolicy = backoffPolicy;
+        this.numClients = numClients;
+        this.outageMs = outageMs;
+    }
+
+    public void run() {
+        int[] attempts = new int[numClients];
+        long[] previousDelays = new long[numClients];
+
+        // { time of next attempt, client index }
+        PriorityQueue<long[]> events = new PriorityQueue<>((first, second) -> Long.compare(first[0], second[0]));
+        for (int client = 0; client < numClients; client++) {
+            previousDelays[client] = backoffPolicy.nextDelay(0, 0);
+            events.add(new long[] { previousDelays[client], client });
+        }
+
+        long[] buckets = new long[16];
+        long totalRequests = 0;
+        long lastReconnect = 0;
+
+        long[] event;
+        while ((event = events.poll()) != null) {
+            long time = event[0];
+            int client = (int) event[1];
+
+            int bucket = (int) (time / BUCKET_MS);
+            if (bucket >= buckets.length) {
+                long[] grown = new long[Math.max(bucket + 1, buckets.length * 2)];
+                System.arraycopy(buckets, 0, grown, 0, buckets.length);
+                buckets = grown;
+            }
+            buckets[bucket]++;
+            totalRequests++;
+
+            if (time >= outageMs) {
+                lastReconnect = time;
+            } else {
+                attempts[client]++;
+                previousDelays[client] = backoffPolicy.nextDelay(attempts[client], previousDelays[client]);
+                events.add(new long[] { time + previousDelays[client], client });
+            }
+        }
+
+        report(buckets, (int) (lastReconnect / BUCKET_MS) + 1, totalRequests, lastReconnect);
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void report(long[] buckets, int numBuckets, long totalRequests, long lastReconnect) {
+        int bucketsPerSecond = 1_000 / BUCKET_MS;
+
+        long peakPerBucket = 0;
+        long peakPerSecond = 0;
+        for (int start = 0; start < numBuckets; start += bucketsPerSecond) {
+            long second = 0;
+            for (int cur = start; (cur < start + bucketsPerSecond) && (cur < numBuckets); cur++) {
+                second += buckets[cur];
+                peakPerBucket = Math.max(peakPerBucket, buckets[cur]);
+            }
+            peakPerSecond = Math.max(peakPerSecond, second);
+
+            LOG.info("RECONNECT STORM t={}s requests/s={}", start / bucketsPerSecond, second);
+        }
+
+        LOG.info("RECONNECT STORM SUMMARY: clients={} outage={}ms policy={} total-requests={} peak-requests/s={} peak-requests/{}ms={} all-reconnected-after={}ms",
+                numClients, outageMs, backoffPolicy.getClass().getSimpleName(), totalRequests, peakPerSecond, BUCKET_MS, peakPerBucket, lastReconnect);
+    }
+}
@@ -4,4 +4,9 @@ public interface ReconnectStrategy {
 
     void activate();
 
+    /**
+     * Stop reconnecting and release the strategy's scheduler registration.
+     */
+    void deactivate();
+
 }
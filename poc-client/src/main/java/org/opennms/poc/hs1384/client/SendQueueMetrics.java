@@ -0,0 +1,119 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters shared by every {@link FlowControlledStreamObserver} created with them, e.g. all of a fleet's streams.
+ */
+public class SendQueueMetrics {
+
+    private final AtomicLong depth = new AtomicLong(0);
+    private final LongAccumulator maxDepth = new LongAccumulator(Long::max, 0);
+    private final AtomicLong spillDepth = new AtomicLong(0);
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+
+    public long getDepth() {
+        return depth.get();
+    }
+
+    public long getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    public long getSpillDepth() {
+        return spillDepth.get();
+    }
+
+    public long getEnqueued() {
+        return enqueued.sum();
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getSpilled() {
+        return spilled.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "depth=" + depth.get() + " max-depth=" + maxDepth.get() + " spill-depth=" + spillDepth.get() +
+                " enqueued=" + enqueued.sum() + " sent=" + sent.sum() + " dropped=" + dropped.sum() + " spilled=" + spilled.sum();
+    }
+
+//========================================
+// Updates
+//----------------------------------------
+
+    void recordEnqueued() {
+        enqueued.increment();
+    }
+
+    void recordQueued() {
+        maxDepth.accumulate(depth.incrementAndGet());
+    }
+
+    void recordDequeued() {
+        depth.decrementAndGet();
+    }
+
+    void recordSent() {
+        sent.increment();
+    }
+
+    void recordUnsent(long count) {
+        sent.add(-count);
+    }
+
+    void recordDropped(long count) {
+        dropped.add(count);
+    }
+
+    void recordSpilled() {
+        spilled.increment();
+        spillDepth.incrementAndGet();
+    }
+
+    void recordUnspilled() {
+        spillDepth.decrementAndGet();
+    }
+}
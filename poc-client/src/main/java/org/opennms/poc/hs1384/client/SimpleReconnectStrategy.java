@@ -2,11 +2,11 @@ package org.opennms.poc.hs1384.client;
 
 import io.grpc.ConnectivityState;
 import io.grpc.ManagedChannel;
+import org.opennms.poc.hs1384.journal.LifecycleEvent;
+import org.opennms.poc.hs1384.journal.LifecycleJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -14,33 +14,52 @@ public class SimpleReconnectStrategy implements Runnable, ReconnectStrategy {
 
     private static final Logger LOG = LoggerFactory.getLogger(SimpleReconnectStrategy.class);
 
-    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final ReconnectScheduler reconnectScheduler;
     private final ManagedChannel channel;
     private final Runnable onConnect;
     private final Runnable onDisconnect;
-    private final int rate;
+    private final BackoffPolicy backoffPolicy;
     private final int maxReconnectAttempts;
+    private final LifecycleJournal journal;
 
+    private volatile ReconnectScheduler.Registration registration;
     private ScheduledFuture<?> reconnectTask;
     private int reconnectAttemptCount;
+    private long previousDelay;
 
-    public SimpleReconnectStrategy(ManagedChannel channel, Runnable onConnect, Runnable onDisconnect, int rate, int maxReconnectAttempts) {
+    public SimpleReconnectStrategy(ReconnectScheduler reconnectScheduler, ManagedChannel channel, Runnable onConnect, Runnable onDisconnect, BackoffPolicy backoffPolicy, int maxReconnectAttempts,
+                                   LifecycleJournal journal) {
+        this.reconnectScheduler = reconnectScheduler;
         this.channel = channel;
         this.onConnect = onConnect;
         this.onDisconnect = onDisconnect;
-        this.rate = rate;
+        this.backoffPolicy = backoffPolicy;
         this.maxReconnectAttempts = maxReconnectAttempts;
+        this.journal = journal;
     }
 
     @Override
     public void activate() {
+        registration = reconnectScheduler.register(channel.toString());
+
         onDisconnect.run();
-        reconnectTask = executor.scheduleAtFixedRate(this, rate, rate, TimeUnit.MILLISECONDS);
+        scheduleNextAttempt();
+    }
+
+    @Override
+    public void deactivate() {
+        ReconnectScheduler.Registration current = registration;
+        registration = null;
+
+        if (current != null) {
+            current.deregister();
+        }
     }
 
     @Override
     public void run() {
-        if (reconnectAttemptCount >= maxReconnectAttempts) {
+        // Negative => unlimited
+        if ((maxReconnectAttempts >= 0) && (reconnectAttemptCount >= maxReconnectAttempts)) {
             LOG.warn("MAXIMUM RECONNECT ATTEMPTS EXCEEDED");
 
             if (reconnectTask != null) {
@@ -50,13 +69,26 @@ public class SimpleReconnectStrategy implements Runnable, ReconnectStrategy {
         } else {
             reconnectAttemptCount++;
             ConnectivityState state = channel.getState(true);
+            journal.record(LifecycleEvent.RECONNECT_ATTEMPT, 0, reconnectAttemptCount, state.name());
             if (state == ConnectivityState.READY) {
                 if (reconnectTask != null) {
                     reconnectTask.cancel(false);
                     onConnect.run();
                     reconnectTask = null;
                 }
+            } else {
+                scheduleNextAttempt();
             }
         }
     }
+
+    private void scheduleNextAttempt() {
+        ReconnectScheduler.Registration current = registration;
+        if (current == null) {
+            return;
+        }
+
+        previousDelay = backoffPolicy.nextDelay(reconnectAttemptCount, previousDelay);
+        reconnectTask = current.schedule(this, previousDelay, TimeUnit.MILLISECONDS);
+    }
 }
@@ -0,0 +1,206 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import com.google.protobuf.Empty;
+import io.grpc.ManagedChannel;
+import io.grpc.stub.StreamObserver;
+import org.opennms.poc.hs1384.grpc.TestRequest;
+import org.opennms.poc.hs1384.grpc.TestServiceGrpc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One Minion of the fleet simulation: its own channel, reconnect strategy, minion-to-cloud heartbeat stream and
+ *  cloud-to-minion stream.  Heartbeats are sent by the fleet's shared heartbeat thread, and the stream is re-opened by
+ *  the reconnect strategy's next connect.  While the stream is down, heartbeats go to the Minion's send queue, to be
+ *  replayed on the next connect; without a send queue (--send-queue-size=0) they are skipped.
+ */
+public class SimulatedMinion {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SimulatedMinion.class);
+
+    private final String minionId;
+    private final ManagedChannel channel;
+    private final TestServiceGrpc.TestServiceStub serviceStub;
+    private final ReconnectStrategy reconnectStrategy;
+    private final MinionToCloudStreamFactory minionToCloudStreamFactory;
+    private final FlowControlledStreamObserver<TestRequest> sendQueue;
+
+    private final AtomicLong connectCount = new AtomicLong(0);
+    private final AtomicLong heartbeatCount = new AtomicLong(0);
+    private final AtomicLong skippedHeartbeatCount = new AtomicLong(0);
+
+    // Guarded by this: StreamObserver is not thread-safe
+    private StreamObserver<TestRequest> heartbeatStream;
+    private HeartbeatResponseObserver heartbeatResponseObserver;
+    private CloudToMinionMessageHandler cloudToMinionMessageHandler;
+
+    public SimulatedMinion(String minionId, ManagedChannel channel, ReconnectStrategyFactory reconnectStrategyFactory,
+                           MinionToCloudStreamFactory minionToCloudStreamFactory) throws IOException {
+        this.minionId = minionId;
+        this.channel = channel;
+        this.serviceStub = TestServiceGrpc.newStub(channel);
+        this.reconnectStrategy = reconnectStrategyFactory.create(channel, this::handleConnect, this::handleDisconnect);
+        this.minionToCloudStreamFactory = minionToCloudStreamFactory;
+        this.sendQueue = minionToCloudStreamFactory.createSendQueue(minionId);
+    }
+
+//========================================
+// Getters
+//----------------------------------------
+
+    public String getMinionId() {
+        return minionId;
+    }
+
+    public ManagedChannel getChannel() {
+        return channel;
+    }
+
+    public long getConnectCount() {
+        return connectCount.get();
+    }
+
+    public long getHeartbeatCount() {
+        return heartbeatCount.get();
+    }
+
+    public long getSkippedHeartbeatCount() {
+        return skippedHeartbeatCount.get();
+    }
+
+    public synchronized boolean isStreaming() {
+        return heartbeatStream != null;
+    }
+
+//========================================
+// Interface
+//----------------------------------------
+
+    public void start() {
+        reconnectStrategy.activate();
+    }
+
+    /**
+     * Called from the fleet's shared heartbeat thread, so it never waits: with a send queue the heartbeat is offered
+     *  outside this Minion's lock, and dropped (counted as skipped) if the queue is full, whatever the overflow policy.
+     */
+    public void sendHeartbeat() {
+        TestRequest heartbeat = TestRequest.newBuilder().setQuery("HEARTBEAT " + minionId).build();
+
+        if (sendQueue != null) {
+            if (sendQueue.offer(heartbeat)) {
+                heartbeatCount.incrementAndGet();
+            } else {
+                skippedHeartbeatCount.incrementAndGet();
+            }
+            return;
+        }
+
+        synchronized (this) {
+            if (heartbeatStream == null) {
+                skippedHeartbeatCount.incrementAndGet();
+                return;
+            }
+
+            heartbeatStream.onNext(heartbeat);
+            heartbeatCount.incrementAndGet();
+        }
+    }
+
+    public void shutdown() {
+        reconnectStrategy.deactivate();
+
+        synchronized (this) {
+            if (sendQueue != null) {
+                sendQueue.onCompleted();
+            } else if (heartbeatStream != null) {
+                heartbeatStream.onCompleted();
+            }
+            heartbeatStream = null;
+        }
+
+        // The cloud-to-minion stream stays open until the cloud ends it, so a graceful shutdown would never finish
+        channel.shutdownNow();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return channel.awaitTermination(timeout, unit);
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private synchronized void handleConnect() {
+        connectCount.incrementAndGet();
+        LOG.debug("Minion {} connected", minionId);
+
+        heartbeatResponseObserver = new HeartbeatResponseObserver();
+        heartbeatStream = minionToCloudStreamFactory.open(serviceStub, heartbeatResponseObserver, sendQueue);
+
+        cloudToMinionMessageHandler = new CloudToMinionMessageHandler(minionId);
+        cloudToMinionMessageHandler.start(serviceStub);
+    }
+
+    private void handleDisconnect() {
+        LOG.debug("Minion {} disconnected", minionId);
+    }
+
+    private synchronized void heartbeatStreamEnded(HeartbeatResponseObserver observer) {
+        // Ignore the end of a stream that was already replaced by a reconnect
+        if (observer == heartbeatResponseObserver) {
+            heartbeatStream = null;
+            heartbeatResponseObserver = null;
+        }
+    }
+
+    private class HeartbeatResponseObserver implements StreamObserver<Empty> {
+        @Override
+        public void onNext(Empty value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            LOG.debug("Heartbeat stream for minion {} failed: {}", minionId, t.getMessage());
+            heartbeatStreamEnded(this);
+        }
+
+        @Override
+        public void onCompleted() {
+            heartbeatStreamEnded(this);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reconnect strategy driven by {@link ManagedChannel#notifyWhenStateChanged} callbacks instead of polling.
+ *
+ * A connection is only requested (via getState(true)) after the channel moves into IDLE or TRANSIENT_FAILURE, so
+ *  the strategy costs nothing while connected, and since the channel only leaves IDLE once per request, there is
+ *  never more than one transport being established at a time.  Each request is delayed by the backoff policy so a
+ *  server that fails every connection (e.g. CTF) does not drive a tight reconnect loop.
+ */
+public class StateChangeReconnectStrategy implements ReconnectStrategy {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StateChangeReconnectStrategy.class);
+
+    private final ManagedChannel channel;
+    private final Runnable onConnect;
+    private final Runnable onDisconnect;
+    private final ReconnectScheduler reconnectScheduler;
+    private final BackoffPolicy backoffPolicy;
+    private final int maxReconnectAttempts;
+
+    private static final int NO_PENDING_REQUEST = 0;
+
+    // Each activation gets a new generation; callbacks and requests of an earlier one are stale and ignored
+    private final AtomicInteger generationCounter = new AtomicInteger(0);
+    private volatile int activeGeneration;
+    private final AtomicInteger pendingRequestGeneration = new AtomicInteger(NO_PENDING_REQUEST);
+    private final AtomicInteger reconnectAttemptCount = new AtomicInteger(0);
+    private final AtomicLong previousDelay = new AtomicLong(0);
+
+    // Only accessed from the channel's state-change callbacks, which the channel serializes
+    private boolean connected;
+
+    private volatile ReconnectScheduler.Registration registration;
+
+    /**
+     * @param backoffPolicy delay from entering IDLE or TRANSIENT_FAILURE to requesting a connection.
+     * @param maxReconnectAttempts maximum number of connection requests; negative => unlimited.
+     */
+    public StateChangeReconnectStrategy(ReconnectScheduler reconnectScheduler, ManagedChannel channel, Runnable onConnect,
+                                        Runnable onDisconnect, BackoffPolicy backoffPolicy, int maxReconnectAttempts) {
+        this.reconnectScheduler = reconnectScheduler;
+        this.channel = channel;
+        this.onConnect = onConnect;
+        this.onDisconnect = onDisconnect;
+        this.backoffPolicy = backoffPolicy;
+        this.maxReconnectAttempts = maxReconnectAttempts;
+    }
+
+    @Override
+    public void activate() {
+        int generation = generationCounter.incrementAndGet();
+        registration = reconnectScheduler.register(channel.toString());
+        activeGeneration = generation;
+
+        connected = false;
+        onDisconnect.run();
+
+        ConnectivityState state = channel.getState(false);
+        if (state == ConnectivityState.READY) {
+            connected = true;
+            onConnect.run();
+        } else if (state == ConnectivityState.IDLE) {
+            requestConnection();
+            state = channel.getState(false);
+        } else if (state == ConnectivityState.TRANSIENT_FAILURE) {
+            scheduleConnectionRequest(generation);
+        }
+
+        watch(state, generation);
+    }
+
+    /**
+     * Stops scheduling connection requests.  The channel's pending state-change callback cannot be removed; it fires
+     *  once more and then stops watching, even if the strategy has been activated again since.
+     */
+    @Override
+    public void deactivate() {
+        activeGeneration = NO_PENDING_REQUEST;
+        pendingRequestGeneration.set(NO_PENDING_REQUEST);
+
+        ReconnectScheduler.Registration current = registration;
+        registration = null;
+
+        if (current != null) {
+            current.deregister();
+        }
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void watch(ConnectivityState current, int generation) {
+        channel.notifyWhenStateChanged(current, () -> handleStateChange(generation));
+    }
+
+    private void handleStateChange(int generation) {
+        if (generation != activeGeneration) {
+            return;
+        }
+
+        ConnectivityState state = channel.getState(false);
+        LOG.debug("CHANNEL STATE CHANGE: {}", state);
+
+        switch (state) {
+            case READY:
+                if (! connected) {
+                    connected = true;
+                    reconnectAttemptCount.set(0);
+                    previousDelay.set(0);
+                    onConnect.run();
+                }
+                break;
+
+            case IDLE:
+            case TRANSIENT_FAILURE:
+                if (connected) {
+                    connected = false;
+                    onDisconnect.run();
+                }
+
+                scheduleConnectionRequest(generation);
+                break;
+
+            case SHUTDOWN:
+                LOG.info("CHANNEL SHUTDOWN; reconnect strategy stopped");
+                return;
+
+            default:
+                break;
+        }
+
+        watch(state, generation);
+    }
+
+    private void scheduleConnectionRequest(int generation) {
+        ReconnectScheduler.Registration current = registration;
+        if ((current == null) || (! pendingRequestGeneration.compareAndSet(NO_PENDING_REQUEST, generation))) {
+            return;
+        }
+
+        // Deactivated since the check above: deactivate() may already have cleared the flag, so clear it here
+        if (generation != activeGeneration) {
+            pendingRequestGeneration.compareAndSet(generation, NO_PENDING_REQUEST);
+            return;
+        }
+
+        long delay = backoffPolicy.nextDelay(reconnectAttemptCount.get(), previousDelay.get());
+        previousDelay.set(delay);
+
+        current.schedule(() -> delayedConnectionRequest(generation), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void delayedConnectionRequest(int generation) {
+        if ((! pendingRequestGeneration.compareAndSet(generation, NO_PENDING_REQUEST)) || (generation != activeGeneration)) {
+            return;
+        }
+
+        ConnectivityState state = channel.getState(false);
+        if ((state == ConnectivityState.IDLE) || (state == ConnectivityState.TRANSIENT_FAILURE)) {
+            requestConnection();
+        }
+    }
+
+    private void requestConnection() {
+        if ((maxReconnectAttempts >= 0) && (reconnectAttemptCount.get() >= maxReconnectAttempts)) {
+            LOG.warn("MAXIMUM RECONNECT ATTEMPTS EXCEEDED");
+            return;
+        }
+
+        reconnectAttemptCount.incrementAndGet();
+        channel.getState(true);
+    }
+}
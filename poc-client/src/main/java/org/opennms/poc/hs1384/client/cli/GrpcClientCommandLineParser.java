@@ -35,8 +35,12 @@ import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
+import org.opennms.poc.hs1384.client.OverflowPolicy;
+import org.opennms.poc.hs1384.compression.MessageCompression;
 import org.springframework.stereotype.Component;
 
+import java.nio.file.Path;
+
 @Component
 public class GrpcClientCommandLineParser {
 
@@ -48,6 +52,19 @@ public class GrpcClientCommandLineParser {
     public static final int DEFAULT_RECONNECT_RATE = 250;
     public static final int DEFAULT_SHUTDOWN_DELAY = 10_000;
     public static final boolean DEFAULT_USE_NETTY = true;
+    public static final int DEFAULT_BACKOFF_MAX = 30_000;
+    public static final int DEFAULT_SIMULATED_CLIENTS = 10_000;
+    public static final int DEFAULT_SIMULATED_OUTAGE = 30_000;
+    public static final int DEFAULT_HEARTBEAT_PERIOD = 10_000;
+    public static final int DEFAULT_BATCH_SIZE = 1;
+    public static final int DEFAULT_BATCH_DELAY = 100;
+    public static final int DEFAULT_SEND_QUEUE_SIZE = 0;
+    public static final int DEFAULT_SPILL_CAPACITY = 100_000;
+    public static final int DEFAULT_SPILL_DISK_LIMIT = 64;
+    public static final int DEFAULT_COMPRESSION_MIN_BYTES = 256;
+    public static final int DEFAULT_LOAD_CONCURRENCY = 1;
+    public static final int DEFAULT_REPORT_INTERVAL = 10_000;
+    public static final int DEFAULT_NUM_CHANNELS = 1;
 
     private int numIterations = DEFAULT_NUM_ITERATIONS;
     private int iterationDelay = DEFAULT_ITERATION_DELAY;
@@ -59,6 +76,30 @@ public class GrpcClientCommandLineParser {
     private boolean useNetty = DEFAULT_USE_NETTY;
     private int maxReconnectAttempts = -1;
 
+    private ReconnectStrategyType reconnectStrategyType = ReconnectStrategyType.SIMPLE;
+    private BackoffPolicyType backoffPolicyType = BackoffPolicyType.FIXED;
+    private int backoffMax = DEFAULT_BACKOFF_MAX;
+    private int simulatedClients = DEFAULT_SIMULATED_CLIENTS;
+    private int simulatedOutage = DEFAULT_SIMULATED_OUTAGE;
+    private int fleetSize = 0;
+    private int fleetEventLoops = 0;
+    private int heartbeatPeriod = DEFAULT_HEARTBEAT_PERIOD;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int batchDelay = DEFAULT_BATCH_DELAY;
+    private int sendQueueSize = DEFAULT_SEND_QUEUE_SIZE;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private int spillCapacity = DEFAULT_SPILL_CAPACITY;
+    private Path spillDirectory;
+    private int spillDiskLimit = DEFAULT_SPILL_DISK_LIMIT;
+    private MessageCompression.Encoding compression = MessageCompression.Encoding.IDENTITY;
+    private int compressionMinBytes = DEFAULT_COMPRESSION_MIN_BYTES;
+    private int targetRate = 0;
+    private int loadConcurrency = DEFAULT_LOAD_CONCURRENCY;
+    private int reportInterval = DEFAULT_REPORT_INTERVAL;
+    private int numChannels = DEFAULT_NUM_CHANNELS;
+    private int maxInFlight = 0;
+    private LoadBalancingPolicyType loadBalancingPolicyType = LoadBalancingPolicyType.PICK_FIRST;
+
     private GrpcTestOperation testOperation = GrpcTestOperation.NORMAL_CLIENT_EXECUTION;
 
 //========================================
@@ -101,6 +142,98 @@ public class GrpcClientCommandLineParser {
         return maxReconnectAttempts;
     }
 
+    public ReconnectStrategyType getReconnectStrategyType() {
+        return reconnectStrategyType;
+    }
+
+    public BackoffPolicyType getBackoffPolicyType() {
+        return backoffPolicyType;
+    }
+
+    public int getBackoffMax() {
+        return backoffMax;
+    }
+
+    public int getSimulatedClients() {
+        return simulatedClients;
+    }
+
+    public int getSimulatedOutage() {
+        return simulatedOutage;
+    }
+
+    public int getFleetSize() {
+        return fleetSize;
+    }
+
+    public int getFleetEventLoops() {
+        return fleetEventLoops;
+    }
+
+    public int getHeartbeatPeriod() {
+        return heartbeatPeriod;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getBatchDelay() {
+        return batchDelay;
+    }
+
+    public int getSendQueueSize() {
+        return sendQueueSize;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getSpillCapacity() {
+        return spillCapacity;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public int getSpillDiskLimit() {
+        return spillDiskLimit;
+    }
+
+    public MessageCompression.Encoding getCompression() {
+        return compression;
+    }
+
+    public int getCompressionMinBytes() {
+        return compressionMinBytes;
+    }
+
+    public int getTargetRate() {
+        return targetRate;
+    }
+
+    public int getLoadConcurrency() {
+        return loadConcurrency;
+    }
+
+    public int getReportInterval() {
+        return reportInterval;
+    }
+
+    public int getNumChannels() {
+        return numChannels;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public LoadBalancingPolicyType getLoadBalancingPolicyType() {
+        return loadBalancingPolicyType;
+    }
+
     public GrpcTestOperation getTestOperation() {
         return testOperation;
     }
@@ -128,15 +261,63 @@ public class GrpcClientCommandLineParser {
 //----------------------------------------
 
     private void prepareOptions(Options options) {
+        options.addOption(
+                new Option("b", "backoff", true, "Reconnect backoff policy: fixed (--reconnect-rate), exponential or decorrelated-jitter (base --reconnect-rate, capped at --backoff-max)")
+        );
+        options.addOption(
+                new Option("B", "backoff-max", true, "Maximum reconnect backoff delay (ms)")
+        );
+        options.addOption(
+                new Option("C", "concurrency", true, "Number of sender threads sharing the load test's target rate (-T)")
+        );
+        options.addOption(
+                new Option("c", "simulated-clients", true, "Number of clients for the reconnect storm simulation (-y)")
+        );
         options.addOption(
                 new Option("d", "iteration-delay", true, "Amount of delay between iterations, in milliseconds")
         );
+        options.addOption(
+                new Option("D", "spill-dir", true, "Spill (--overflow-policy=spill) to memory-mapped segment files under this directory, one subdirectory per Minion, instead of the heap")
+        );
+        options.addOption(
+                new Option("e", "fleet-event-loops", true, "Number of Netty event-loop threads shared by the fleet (-F); 0 = Netty default")
+        );
+        options.addOption(
+                new Option("F", "fleet-size", true, "Simulate a fleet of this many Minions, each with its own channel, streams and reconnect strategy, for --shutdown-delay ms")
+        );
+        options.addOption(
+                new Option("g", "batch-size", true, "Send minion-to-cloud messages in batches of up to this many messages; 1 = no batching")
+        );
+        options.addOption(
+                new Option("G", "batch-delay", true, "Maximum time (ms) a minion-to-cloud message waits for its batch to fill (-g)")
+        );
+        options.addOption(
+                new Option("H", "heartbeat-period", true, "Minion-to-cloud heartbeat period (ms) of each fleet Minion (-F); 0 = no heartbeats")
+        );
+        options.addOption(
+                new Option("M", "max-in-flight", true, "Pipeline the iterations' requests from one thread through the future stub, with at most this many in flight; 0 = off (see -a)")
+        );
         options.addOption(
                 new Option("n", "num-iteration", true, "Number of iterations to execute")
         );
         options.addOption(
                 new Option("a", "async", false, "Execute operations asynchronously")
         );
+        options.addOption(
+                new Option("I", "report-interval", true, "ms between the load test's (-T) interval reports")
+        );
+        options.addOption(
+                new Option("K", "channels", true, "Number of channels (connections): the first carries the streams, unary calls go to the other channel with the fewest outstanding calls")
+        );
+        options.addOption(
+                new Option("k", "reconnect-strategy", true, "Reconnect strategy: simple (poll getState(true)) or state-change (notifyWhenStateChanged)")
+        );
+        options.addOption(
+                new Option("l", "load-balancing", true, "Load-balancing policy of each channel: pick-first or round-robin (over all addresses the host resolves to)")
+        );
+        options.addOption(
+                new Option("L", "spill-disk-limit", true, "Maximum disk space (MB) of each Minion's spill files (-D)")
+        );
         options.addOption(
                 new Option("m", "max-reconnect-attempts", true, "Set the maximum number or reconnect attempts for the reconnect strategy (-1 = unlimited)")
         );
@@ -146,6 +327,15 @@ public class GrpcClientCommandLineParser {
         options.addOption(
                 new Option("O", "ok-http", false, "Use OK Http client implementation instead of netty")
         );
+        options.addOption(
+                new Option("P", "spill-capacity", true, "Number of messages the spill (--overflow-policy=spill) holds before dropping new ones")
+        );
+        options.addOption(
+                new Option("q", "send-queue-size", true, "Bound on minion-to-cloud messages queued per Minion while the stream is not ready; 0 (default) = no send queue, unbounded")
+        );
+        options.addOption(
+                new Option("Q", "overflow-policy", true, "What to do with a message when the send queue (-q) is full: drop-oldest, block or spill")
+        );
         options.addOption(
                 new Option("r", "enable-reconnect-strategy", true, "Enable/disable the reconnect strategy")
         );
@@ -158,12 +348,27 @@ public class GrpcClientCommandLineParser {
         options.addOption(
                 new Option("s", "sync", false, "Execute operations synchronously")
         );
+        options.addOption(
+                new Option("T", "target-rate", true, "Run an open-loop load test of unary requests at this many requests/s for --shutdown-delay ms")
+        );
         options.addOption(
                 new Option("t", "num-thread", true, "Number of threads to use (-x)")
         );
+        options.addOption(
+                new Option("o", "simulated-outage", true, "Outage duration (ms) for the reconnect storm simulation (-y)")
+        );
         options.addOption(
                 new Option("x", "spam-channel-get-state", false, "Operate by spamming the channel getState call")
         );
+        options.addOption(
+                new Option("y", "simulate-reconnect-storm", false, "Simulate --simulated-clients clients losing the connection at once and report the reconnect request rate")
+        );
+        options.addOption(
+                new Option("z", "compression", true, "Message encoding of everything sent to the server: identity, gzip or snappy")
+        );
+        options.addOption(
+                new Option("Z", "compression-min-bytes", true, "Send messages smaller than this many bytes uncompressed (-z)")
+        );
     }
 
     private void processCommandLine(CommandLine commandLine) {
@@ -171,16 +376,87 @@ public class GrpcClientCommandLineParser {
 
         for (Option oneOption : commandLine.getOptions()) {
             switch (oneOption.getOpt()) {
+                case "b":
+                    this.backoffPolicyType = BackoffPolicyType.valueOf(oneOption.getValue().toUpperCase().replace('-', '_'));
+                    break;
+
+                case "B":
+                    this.backoffMax = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    break;
+
+                case "C":
+                    this.loadConcurrency = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    if (this.loadConcurrency <= 0) {
+                        throw new IllegalArgumentException("load concurrency must be positive: " + this.loadConcurrency);
+                    }
+                    break;
+
+                case "c":
+                    this.simulatedClients = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    break;
+
                 case "d":
                     textValue = oneOption.getValue();
                     this.iterationDelay = parseIntWithOptionalUnderscoresCommas(textValue);
                     break;
 
+                case "D":
+                    this.spillDirectory = Path.of(oneOption.getValue());
+                    break;
+
+                case "e":
+                    this.fleetEventLoops = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    break;
+
+                case "F":
+                    this.fleetSize = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    this.testOperation = GrpcTestOperation.SIMULATE_FLEET;
+                    break;
+
+                case "g":
+                    this.batchSize = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    break;
+
+                case "G":
+                    this.batchDelay = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    break;
+
+                case "H":
+                    this.heartbeatPeriod = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    break;
+
+                case "I":
+                    this.reportInterval = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    break;
+
+                case "K":
+                    this.numChannels = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    if (this.numChannels <= 0) {
+                        throw new IllegalArgumentException("number of channels must be positive: " + this.numChannels);
+                    }
+                    break;
+
+                case "k":
+                    this.reconnectStrategyType = ReconnectStrategyType.valueOf(oneOption.getValue().toUpperCase().replace('-', '_'));
+                    break;
+
+                case "l":
+                    this.loadBalancingPolicyType = LoadBalancingPolicyType.valueOf(oneOption.getValue().toUpperCase().replace('-', '_'));
+                    break;
+
+                case "L":
+                    this.spillDiskLimit = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    break;
+
                 case "m":
                     textValue = oneOption.getValue();
                     this.maxReconnectAttempts = parseIntWithOptionalUnderscoresCommas(textValue);
                     break;
 
+                case "M":
+                    this.maxInFlight = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    break;
+
                 case "N":
                     useNetty = true;
                     break;
@@ -198,6 +474,18 @@ public class GrpcClientCommandLineParser {
                     this.executeAsync = true;
                     break;
 
+                case "P":
+                    this.spillCapacity = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    break;
+
+                case "q":
+                    this.sendQueueSize = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    break;
+
+                case "Q":
+                    this.overflowPolicy = OverflowPolicy.valueOf(oneOption.getValue().toUpperCase().replace('-', '_'));
+                    break;
+
                 case "R":
                     this.reconnectRate = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
                     break;
@@ -214,14 +502,38 @@ public class GrpcClientCommandLineParser {
                     this.executeAsync = false;
                     break;
 
+                case "T":
+                    this.targetRate = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    if (this.targetRate <= 0) {
+                        throw new IllegalArgumentException("target rate must be positive: " + this.targetRate);
+                    }
+                    this.testOperation = GrpcTestOperation.LOAD_TEST;
+                    break;
+
                 case "t":
                     textValue = oneOption.getValue();
                     this.numThreads = parseIntWithOptionalUnderscoresCommas(textValue);
                     break;
 
+                case "o":
+                    this.simulatedOutage = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    break;
+
                 case "x":
                     this.testOperation = GrpcTestOperation.SPAM_CHANNEL_GET_STATE;
                     break;
+
+                case "y":
+                    this.testOperation = GrpcTestOperation.SIMULATE_RECONNECT_STORM;
+                    break;
+
+                case "z":
+                    this.compression = MessageCompression.Encoding.valueOf(oneOption.getValue().toUpperCase().replace('-', '_'));
+                    break;
+
+                case "Z":
+                    this.compressionMinBytes = parseIntWithOptionalUnderscoresCommas(oneOption.getValue());
+                    break;
             }
         }
     }
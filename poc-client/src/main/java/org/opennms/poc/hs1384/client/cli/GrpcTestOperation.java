@@ -31,5 +31,8 @@ package org.opennms.poc.hs1384.client.cli;
 
 public enum GrpcTestOperation {
     NORMAL_CLIENT_EXECUTION,
-    SPAM_CHANNEL_GET_STATE
+    SPAM_CHANNEL_GET_STATE,
+    SIMULATE_RECONNECT_STORM,
+    SIMULATE_FLEET,
+    LOAD_TEST
 }
@@ -0,0 +1,128 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opennms.poc.hs1384.grpc.TestRequest;
+import org.opennms.poc.hs1384.grpc.TestRequestBatch;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchingStreamObserverTest {
+
+    private static final int MAX_BATCH_SIZE = 3;
+
+    private ScheduledThreadPoolExecutor flushScheduler;
+    private LinkedBlockingQueue<TestRequestBatch> sent;
+    private StreamObserver<TestRequestBatch> batchStream;
+
+    @BeforeEach
+    public void setUp() {
+        flushScheduler = new ScheduledThreadPoolExecutor(1);
+        flushScheduler.setRemoveOnCancelPolicy(true);
+
+        sent = new LinkedBlockingQueue<>();
+        batchStream = new StreamObserver<>() {
+            @Override
+            public void onNext(TestRequestBatch batch) {
+                sent.add(batch);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        };
+    }
+
+    @AfterEach
+    public void tearDown() {
+        flushScheduler.shutdownNow();
+    }
+
+    @Test
+    public void fullBatchIsSentAtOnce() {
+        BatchingStreamObserver batching = new BatchingStreamObserver(batchStream, MAX_BATCH_SIZE, 60_000, flushScheduler);
+
+        batching.onNext(request("a"));
+        batching.onNext(request("b"));
+        assertTrue(sent.isEmpty());
+
+        batching.onNext(request("c"));
+        assertEquals(List.of(request("a"), request("b"), request("c")), sent.remove().getRequestsList());
+        assertEquals(0, flushScheduler.getQueue().size());
+    }
+
+    @Test
+    public void partialBatchIsSentAfterTheDelay() throws InterruptedException {
+        BatchingStreamObserver batching = new BatchingStreamObserver(batchStream, MAX_BATCH_SIZE, 10, flushScheduler);
+
+        batching.onNext(request("a"));
+
+        TestRequestBatch batch = sent.poll(5, TimeUnit.SECONDS);
+        assertNotNull(batch);
+        assertEquals(List.of(request("a")), batch.getRequestsList());
+    }
+
+    @Test
+    public void abandonHandsBackThePendingBatchAndCancelsTheFlush() throws InterruptedException {
+        BatchingStreamObserver batching = new BatchingStreamObserver(batchStream, MAX_BATCH_SIZE, 50, flushScheduler);
+
+        batching.onNext(request("a"));
+        batching.onNext(request("b"));
+        assertEquals(1, flushScheduler.getQueue().size());
+
+        assertEquals(List.of(request("a"), request("b")), batching.abandon());
+        assertEquals(0, flushScheduler.getQueue().size());
+        assertNull(sent.poll(100, TimeUnit.MILLISECONDS));
+
+        assertEquals(List.of(), batching.abandon());
+        assertThrows(IllegalStateException.class, () -> batching.onNext(request("c")));
+    }
+
+    private static TestRequest request(String query) {
+        return TestRequest.newBuilder().setQuery(query).build();
+    }
+}
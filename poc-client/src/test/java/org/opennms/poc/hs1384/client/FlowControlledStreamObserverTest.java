@@ -0,0 +1,315 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the queue against {@link FakeCall}s, which are ready while they have credit left.
+ */
+public class FlowControlledStreamObserverTest {
+
+    private static final String COMPLETED = "<completed>";
+
+    private final SendQueueMetrics metrics = new SendQueueMetrics();
+
+    @Test
+    public void dropOldestEvictsTheOldestMessages() {
+        FlowControlledStreamObserver<String> queue = new FlowControlledStreamObserver<>(3, OverflowPolicy.DROP_OLDEST, 0, null, metrics);
+        FakeCall call = attach(queue);
+
+        for (String message : List.of("a", "b", "c", "d", "e")) {
+            queue.onNext(message);
+        }
+
+        assertEquals(3, queue.getQueueDepth());
+        assertEquals(5, metrics.getEnqueued());
+        assertEquals(2, metrics.getDropped());
+        assertEquals(3, metrics.getDepth());
+        assertEquals(3, metrics.getMaxDepth());
+        assertEquals(0, metrics.getSent());
+
+        call.grant(10);
+
+        assertEquals(List.of("c", "d", "e"), call.sent);
+        assertEquals(0, metrics.getDepth());
+        assertEquals(3, metrics.getSent());
+    }
+
+    @Test
+    public void blockedSenderTimesOutAndDropsTheMessage() {
+        FlowControlledStreamObserver<String> queue = new FlowControlledStreamObserver<>(1, OverflowPolicy.BLOCK, 50, null, metrics);
+        attach(queue);
+
+        queue.onNext("a");
+
+        long start = System.nanoTime();
+        queue.onNext("b");
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(waitedMs >= 40, "waited " + waitedMs + "ms");
+        assertEquals(1, queue.getQueueDepth());
+        assertEquals(1, metrics.getDropped());
+    }
+
+    @Test
+    public void blockedSenderWakesWhenTheQueueDrains() throws InterruptedException {
+        FlowControlledStreamObserver<String> queue = new FlowControlledStreamObserver<>(1, OverflowPolicy.BLOCK, 60_000, null, metrics);
+        FakeCall call = attach(queue);
+
+        queue.onNext("a");
+
+        Thread sender = new Thread(() -> queue.onNext("b"));
+        sender.start();
+        awaitWaiting(sender);
+
+        call.grant(10);
+        sender.join(5_000);
+
+        assertFalse(sender.isAlive());
+        assertEquals(List.of("a", "b"), call.sent);
+        assertEquals(0, metrics.getDropped());
+    }
+
+    @Test
+    public void offerNeverBlocks() {
+        FlowControlledStreamObserver<String> queue = new FlowControlledStreamObserver<>(1, OverflowPolicy.BLOCK, 60_000, null, metrics);
+        attach(queue);
+
+        long start = System.nanoTime();
+        assertTrue(queue.offer("a"));
+        assertFalse(queue.offer("b"));
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(waitedMs < 1_000, "waited " + waitedMs + "ms");
+        assertEquals(1, metrics.getDropped());
+
+        queue.onCompleted();
+        assertFalse(queue.offer("c"));
+    }
+
+    @Test
+    public void completionWaitsForTheQueueAndTheSpill() {
+        HeapSpillQueue<String> spill = new HeapSpillQueue<>(100);
+        FlowControlledStreamObserver<String> queue = new FlowControlledStreamObserver<>(2, OverflowPolicy.SPILL, 0, spill, metrics);
+        FakeCall call = attach(queue);
+
+        for (String message : List.of("a", "b", "c", "d", "e")) {
+            queue.onNext(message);
+        }
+        assertEquals(5, spill.size());
+
+        queue.onCompleted();
+        assertEquals(List.of(), call.sent);
+
+        call.grant(2);
+        assertEquals(List.of("a", "b"), call.sent);
+
+        call.grant(2);
+        assertEquals(List.of("a", "b", "c", "d"), call.sent);
+
+        call.grant(10);
+        assertEquals(List.of("a", "b", "c", "d", "e", COMPLETED), call.sent);
+        assertEquals(0, metrics.getSpillDepth());
+    }
+
+    @Test
+    public void endOfAReplacedCallIsIgnored() {
+        FlowControlledStreamObserver<String> queue = new FlowControlledStreamObserver<>(10, OverflowPolicy.DROP_OLDEST, 0, null, metrics);
+
+        FakeCall oldCall = new FakeCall();
+        ClientResponseObserver<String, Object> oldResponseObserver = queue.responseObserver(new NoopObserver(), Function.identity());
+        oldResponseObserver.beforeStart(oldCall);
+
+        FakeCall newCall = attach(queue);
+        oldResponseObserver.onError(new RuntimeException("old call failed"));
+
+        assertTrue(queue.isAttached());
+
+        queue.onNext("a");
+        newCall.grant(10);
+
+        assertEquals(List.of("a"), newCall.sent);
+        assertEquals(List.of(), oldCall.sent);
+    }
+
+    @Test
+    public void messagesHeldByTheStageAreReplayedOnTheNextCall() {
+        FlowControlledStreamObserver<String> queue = new FlowControlledStreamObserver<>(10, OverflowPolicy.DROP_OLDEST, 0, null, metrics);
+
+        FakeCall firstCall = new FakeCall();
+        HoldingStage stage = new HoldingStage();
+        ClientResponseObserver<String, Object> firstResponseObserver = queue.responseObserver(new NoopObserver(), requestStream -> stage);
+        firstResponseObserver.beforeStart(firstCall);
+
+        firstCall.grant(10);
+        queue.onNext("a");
+        queue.onNext("b");
+        assertEquals(List.of("a", "b"), stage.held);
+
+        firstResponseObserver.onError(new RuntimeException("call failed"));
+        queue.onNext("c");
+        assertEquals(3, queue.getQueueDepth());
+        assertEquals(0, metrics.getSent());
+
+        FakeCall secondCall = attach(queue);
+        secondCall.grant(10);
+
+        assertEquals(List.of("a", "b", "c"), secondCall.sent);
+        assertEquals(3, metrics.getSent());
+        assertEquals(0, metrics.getDepth());
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private static FakeCall attach(FlowControlledStreamObserver<String> queue) {
+        FakeCall call = new FakeCall();
+        queue.<String, Object>responseObserver(new NoopObserver(), Function.identity()).beforeStart(call);
+        return call;
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((thread.getState() != Thread.State.TIMED_WAITING) && (System.nanoTime() < deadline)) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.TIMED_WAITING, thread.getState());
+    }
+
+    /**
+     * Call that is ready while it has credit left; sending a message uses one credit.
+     */
+    private static class FakeCall extends ClientCallStreamObserver<String> {
+        private final List<String> sent = new ArrayList<>();
+        private int credit;
+        private Runnable onReadyHandler;
+
+        private void grant(int messages) {
+            credit += messages;
+            onReadyHandler.run();
+        }
+
+        @Override
+        public boolean isReady() {
+            return credit > 0;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReadyHandler = onReadyHandler;
+        }
+
+        @Override
+        public void onNext(String value) {
+            credit--;
+            sent.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+            sent.add(COMPLETED);
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+    }
+
+    /**
+     * Stage that passes nothing on until abandoned, like a batch that never fills.
+     */
+    private static class HoldingStage implements BufferingStreamObserver<String> {
+        private final List<String> held = new ArrayList<>();
+
+        @Override
+        public void onNext(String value) {
+            held.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+
+        @Override
+        public List<String> abandon() {
+            List<String> unsent = List.copyOf(held);
+            held.clear();
+            return unsent;
+        }
+    }
+
+    private static class NoopObserver implements StreamObserver<Object> {
+        @Override
+        public void onNext(Object value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+}
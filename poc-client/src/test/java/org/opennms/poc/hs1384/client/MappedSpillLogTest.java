@@ -0,0 +1,196 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opennms.poc.hs1384.grpc.TestRequest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Uses 64-byte segments.  A TestRequest with a query of n < 128 ASCII characters serializes to n + 2 bytes, so its
+ *  record takes n + 6 bytes; a 58-character query fills a segment exactly.
+ */
+public class MappedSpillLogTest {
+
+    private static final int SEGMENT_BYTES = 64;
+    private static final int FILLING_QUERY_LENGTH = SEGMENT_BYTES - 6;
+
+    @TempDir
+    Path directory;
+
+    private MappedSpillLog<TestRequest> spillLog;
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (spillLog != null) {
+            spillLog.close();
+        }
+    }
+
+    @Test
+    public void recordThatExactlyFillsASegment() throws IOException {
+        spillLog = open(4);
+
+        assertTrue(spillLog.offer(request("a", FILLING_QUERY_LENGTH)));
+        assertEquals(SEGMENT_BYTES, spillLog.getMappedBytes());
+
+        assertTrue(spillLog.offer(request("b", FILLING_QUERY_LENGTH)));
+        assertEquals(2 * SEGMENT_BYTES, spillLog.getMappedBytes());
+
+        assertEquals(request("a", FILLING_QUERY_LENGTH), spillLog.poll());
+        assertEquals(request("b", FILLING_QUERY_LENGTH), spillLog.poll());
+        assertNull(spillLog.poll());
+    }
+
+    @Test
+    public void recordLargerThanASegmentIsRefused() throws IOException {
+        spillLog = open(4);
+
+        assertFalse(spillLog.offer(request("a", FILLING_QUERY_LENGTH + 1)));
+        assertEquals(0, spillLog.size());
+        assertEquals(0, spillLog.getMappedBytes());
+    }
+
+    @Test
+    public void offerBeyondMaxSegmentsIsRefused() throws IOException {
+        spillLog = open(2);
+
+        assertTrue(spillLog.offer(request("a", FILLING_QUERY_LENGTH)));
+        assertTrue(spillLog.offer(request("b", FILLING_QUERY_LENGTH)));
+        assertFalse(spillLog.offer(request("c", 1)));
+        assertEquals(2, spillLog.size());
+
+        // Reading the first segment frees it for the next write
+        assertEquals(request("a", FILLING_QUERY_LENGTH), spillLog.poll());
+        assertTrue(spillLog.offer(request("c", 1)));
+        assertEquals(2 * SEGMENT_BYTES, spillLog.getMappedBytes());
+
+        assertEquals(request("b", FILLING_QUERY_LENGTH), spillLog.poll());
+        assertEquals(request("c", 1), spillLog.poll());
+        assertNull(spillLog.poll());
+    }
+
+    @Test
+    public void interleavedOffersAndPollsKeepTheOrderAcrossSegments() throws IOException {
+        spillLog = open(8);
+        ArrayDeque<TestRequest> expected = new ArrayDeque<>();
+        long maxMappedBytes = 0;
+        int next = 0;
+
+        for (int round = 0; round < 20; round++) {
+            // Offers outpace polls for the first rounds, then the log drains
+            int offers = (round < 10) ? 3 : 1;
+            int polls = (round < 10) ? 2 : 3;
+
+            for (int cur = 0; cur < offers; cur++) {
+                TestRequest message = request("m" + next, 10 + (next % 20));
+                next++;
+                assertTrue(spillLog.offer(message));
+                expected.add(message);
+            }
+            maxMappedBytes = Math.max(maxMappedBytes, spillLog.getMappedBytes());
+
+            for (int cur = 0; cur < polls; cur++) {
+                assertEquals(expected.poll(), spillLog.poll());
+            }
+            assertEquals(expected.size(), spillLog.size());
+        }
+
+        assertTrue(maxMappedBytes >= 3 * SEGMENT_BYTES, "mapped at most " + maxMappedBytes + " bytes");
+        assertTrue(expected.isEmpty());
+        assertNull(spillLog.poll());
+    }
+
+    @Test
+    public void drainedLogShrinksBackAndCloseDeletesIt() throws IOException {
+        spillLog = open(8);
+
+        for (int cur = 0; cur < 5; cur++) {
+            assertTrue(spillLog.offer(request("m" + cur, FILLING_QUERY_LENGTH)));
+        }
+        assertEquals(5 * SEGMENT_BYTES, spillLog.getMappedBytes());
+        assertEquals(5, segmentFiles().size());
+
+        for (int cur = 0; cur < 5; cur++) {
+            assertEquals(request("m" + cur, FILLING_QUERY_LENGTH), spillLog.poll());
+        }
+
+        // The emptied write segment, and one spare
+        assertEquals(2 * SEGMENT_BYTES, spillLog.getMappedBytes());
+        assertEquals(2, segmentFiles().size());
+
+        spillLog.close();
+        assertEquals(0, spillLog.getMappedBytes());
+        assertEquals(List.of(), segmentFiles());
+    }
+
+    @Test
+    public void leftoverSegmentsAreDeleted() throws IOException {
+        Files.writeString(directory.resolve("spill-7.log"), "left over");
+        Files.writeString(directory.resolve("unrelated.txt"), "kept");
+
+        spillLog = open(4);
+
+        assertEquals(List.of(), segmentFiles());
+        assertTrue(Files.exists(directory.resolve("unrelated.txt")));
+        assertNull(spillLog.poll());
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private MappedSpillLog<TestRequest> open(int maxSegments) throws IOException {
+        return new MappedSpillLog<>(directory, TestRequest.parser(), SEGMENT_BYTES, maxSegments);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("spill-")).toList();
+        }
+    }
+
+    private static TestRequest request(String prefix, int queryLength) {
+        return TestRequest.newBuilder().setQuery((prefix + "x".repeat(queryLength)).substring(0, queryLength)).build();
+    }
+}
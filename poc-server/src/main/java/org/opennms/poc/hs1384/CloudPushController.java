@@ -0,0 +1,93 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * HTTP front-end for the cloud-to-minion push API, used to drive push load tests:
+ *
+ * <pre>
+ *     curl -X POST 'http://localhost:8080/cloud-push/broadcast?count=100&amp;payload=hello'
+ *     curl -X POST 'http://localhost:8080/cloud-push/minion/minion-1?payload=hello'
+ *     curl http://localhost:8080/cloud-push/stats
+ * </pre>
+ */
+@RestController
+@RequestMapping("/cloud-push")
+public class CloudPushController {
+
+    @Autowired
+    private MinionSessionRegistry minionSessionRegistry;
+
+    @PostMapping("/broadcast")
+    public Map<String, Object> broadcast(
+            @RequestParam(defaultValue = "PUSH") String payload,
+            @RequestParam(defaultValue = "1") int count) {
+
+        long queued = 0;
+        long dropped = 0;
+        long fanOutNanos = 0;
+        for (int cur = 0; cur < count; cur++) {
+            MinionSessionRegistry.PushResult result = minionSessionRegistry.broadcast(payload);
+
+            queued += result.queued();
+            dropped += result.dropped();
+            fanOutNanos += result.fanOutNanos();
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("sessions", minionSessionRegistry.getSessionCount());
+        response.put("queued", queued);
+        response.put("dropped", dropped);
+        response.put("fanOutMicros", fanOutNanos / 1_000);
+
+        return response;
+    }
+
+    @PostMapping("/minion/{minionId}")
+    public Map<String, Object> pushToMinion(@PathVariable String minionId, @RequestParam(defaultValue = "PUSH") String payload) {
+        return Map.of("minionId", minionId, "queued", minionSessionRegistry.push(minionId, payload));
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        return minionSessionRegistry.getStats();
+    }
+}
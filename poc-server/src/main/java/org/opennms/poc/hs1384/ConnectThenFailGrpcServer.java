@@ -33,6 +33,9 @@ import io.grpc.Server;
 import io.grpc.ServerBuilder;
 import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
 import org.checkerframework.checker.units.qual.A;
+import org.opennms.poc.hs1384.census.TransportCensus;
+import org.opennms.poc.hs1384.journal.LifecycleEvent;
+import org.opennms.poc.hs1384.journal.LifecycleJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -40,14 +43,28 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * WARNING: this implementation uses basic, primitive thread handling.  You have been warned.
+ * Connect-Then-Fail server.  Two engines are available, selected with ctf-server.engine:
+ *
+ * <ul>
+ *     <li>nio (default) - selector event loops; see {@link NioConnectThenFailEngine}</li>
+ *     <li>thread - one thread per connection.
+ *         WARNING: this engine uses basic, primitive thread handling.  You have been warned.</li>
+ * </ul>
+ *
+ * The thread engine runs the acceptor and every connection on platform threads by default, or on virtual threads
+ *  with ctf-server.threading=virtual (requires a Java 21+ runtime).
  */
 @Component
 public class ConnectThenFailGrpcServer {
@@ -60,32 +77,118 @@ public class ConnectThenFailGrpcServer {
     @Value("${ctf-server.port:9991}")
     private int port = 9991;
 
+    @Value("${ctf-server.engine:nio}")
+    private String engine = "nio";
+
+    @Value("${ctf-server.threading:platform}")
+    private String threading = "platform";
+
+    @Value("${ctf-server.event-loops:1}")
+    private int eventLoops = 1;
+
+    @Value("${ctf-server.goaway-period:60000}")
+    private long goAwayPeriod = 60_000;
+
     @Autowired
     private Http2FrameFormatter http2FrameFormatter;
 
-    private ServerSocket serverSocket;
+    @Autowired
+    private TransportCensusService transportCensusService;
+
+    @Autowired
+    private LifecycleJournalService lifecycleJournalService;
+
+    private ServerSocketChannel serverSocketChannel;
+    private NioConnectThenFailEngine nioEngine;
+    private ThreadFactory connectionThreadFactory;
     private AtomicBoolean shutdown = new AtomicBoolean(false);
 
     @PostConstruct
     public void init() {
         try {
-            LOG.info("Starting CTF server on port {}", port);
-
-            serverSocket = new ServerSocket(port);
-            Thread serverThread = new Thread(this::runServer);
-
-            serverThread.start();
+            LOG.info("Starting CTF server on port {} using engine {}", port, engine);
+
+            if ("nio".equals(engine)) {
+                if (! "platform".equals(threading)) {
+                    LOG.warn("ctf-server.threading={} ignored; it only applies to ctf-server.engine=thread", threading);
+                }
+
+                nioEngine = new NioConnectThenFailEngine(
+                        new InetSocketAddress(port),
+                        eventLoops,
+                        goAwayPeriod,
+                        http2FrameFormatter.getSettingsFrame(),
+                        http2FrameFormatter.getGoAwayFrame(),
+                        transportCensusService.getCensus(),
+                        lifecycleJournalService.getJournal()
+                );
+                nioEngine.start();
+            } else if ("thread".equals(engine)) {
+                connectionThreadFactory = createConnectionThreadFactory();
+                LOG.info("CTF thread engine using {} threads", threading);
+
+                serverSocketChannel = ServerSocketChannel.open();
+                serverSocketChannel.bind(new InetSocketAddress(port));
+                Thread serverThread = connectionThreadFactory.newThread(this::runServer);
+
+                serverThread.start();
+            } else {
+                throw new IllegalArgumentException("Unknown ctf-server.engine: " + engine);
+            }
         } catch (Exception ioExc) {
             LOG.error("Failed to startup the CTF server", ioExc);
             throw new RuntimeException(ioExc);
         }
     }
 
+    @PreDestroy
+    public void shutdown() {
+        shutdown.set(true);
+
+        if (nioEngine != null) {
+            nioEngine.shutdown();
+        }
+    }
+
+    private ThreadFactory createConnectionThreadFactory() throws ReflectiveOperationException {
+        switch (threading) {
+            case "platform":
+                AtomicLong counter = new AtomicLong(0);
+                return runnable -> new Thread(runnable, "ctf-conn-" + counter.getAndIncrement());
+
+            case "virtual":
+                return createVirtualThreadFactory();
+
+            default:
+                throw new IllegalArgumentException("Unknown ctf-server.threading: " + threading);
+        }
+    }
+
+    /**
+     * Equivalent of Thread.ofVirtual().name("ctf-vconn-", 0).factory(), looked up reflectively so the project can
+     *  still be compiled for Java 17.
+     */
+    private ThreadFactory createVirtualThreadFactory() throws ReflectiveOperationException {
+        Method ofVirtual;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException nsmExc) {
+            throw new IllegalStateException(
+                    "ctf-server.threading=virtual requires Java 21+; running on " + Runtime.version(), nsmExc);
+        }
+
+        Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+        Object builder = ofVirtual.invoke(null);
+        builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "ctf-vconn-", 0L);
+
+        return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    }
+
     private void runServer() {
         while (! shutdown.get()) {
             try {
-                Socket connectionSocket = serverSocket.accept();
-                Thread newConnectionThread = new Thread(() -> runOneConnection(connectionSocket));
+                SocketChannel connectionChannel = serverSocketChannel.accept();
+                Thread newConnectionThread = connectionThreadFactory.newThread(() -> runOneConnection(connectionChannel));
                 newConnectionThread.start();
             } catch (Exception exc) {
                 LOG.error("CTF Server Error", exc);
@@ -93,42 +196,39 @@ public class ConnectThenFailGrpcServer {
         }
     }
 
-    private void runOneConnection(Socket socket) {
-        try {
-            sendSettings(socket);
-        } catch (IOException ioException) {
-            LOG.error("SETTINGS send failed", ioException);
-        }
+    private void runOneConnection(SocketChannel channel) {
+        SocketAddress remoteAddress = channel.socket().getRemoteSocketAddress();
+        SocketAddress localAddress = channel.socket().getLocalSocketAddress();
+        TransportCensus.Transport censusEntry = transportCensusService.getCensus().opened(TransportCensus.hostOf(remoteAddress), localAddress, remoteAddress);
+        LifecycleJournal journal = lifecycleJournalService.getJournal();
+
+        // SETTINGS + the first GOAWAY go out in a single gathering write
+        Http2FrameBatchWriter connectBatch =
+                new Http2FrameBatchWriter(http2FrameFormatter.getSettingsFrame(), http2FrameFormatter.getGoAwayFrame());
+        Http2FrameBatchWriter goAwayBatch = new Http2FrameBatchWriter(http2FrameFormatter.getGoAwayFrame());
 
+        Http2FrameBatchWriter nextBatch = connectBatch;
         while (! shutdown.get()) {
             try {
-                LOG.info("SENDING GOAWAY TO CLIENT ON SOCKET {}", socket.getRemoteSocketAddress());
-                sendGoAway(socket);
-                Thread.sleep(60_000);
+                LOG.info("SENDING GOAWAY TO CLIENT ON SOCKET {}", remoteAddress);
+                nextBatch.write(channel);
+                nextBatch = goAwayBatch;
+                journal.record(LifecycleEvent.GOAWAY_SENT, censusEntry.getId(),
+                        LifecycleJournal.portOf(localAddress), LifecycleJournal.portOf(remoteAddress), 0, null);
+
+                Thread.sleep(goAwayPeriod);
             } catch (Exception exc) {
                 LOG.error("CTF Server Error", exc);
-                return;
+                break;
             }
         }
 
         try {
-            socket.close();
+            channel.close();
         } catch (IOException ioExc) {
             LOG.info("SOCKET exception on shutdown", ioExc);
         }
-    }
-
-    private void sendSettings(Socket socket) throws IOException {
-        byte[] frame = http2FrameFormatter.formatSettingsFrame();
-
-        socket.getOutputStream().write(frame);
-        socket.getOutputStream().flush();
-    }
-
-    private void sendGoAway(Socket socket) throws IOException {
-        byte[] frame = http2FrameFormatter.formatGoAwayFrame();
 
-        socket.getOutputStream().write(frame);
-        socket.getOutputStream().flush();
+        censusEntry.closed();
     }
 }
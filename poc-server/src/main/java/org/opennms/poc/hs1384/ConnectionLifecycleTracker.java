@@ -0,0 +1,209 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import io.grpc.Attributes;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerTransportFilter;
+import org.opennms.poc.hs1384.census.TransportCensus;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the gRPC server's transports (connections) and their active calls, to report how many transports each
+ *  connection-lifecycle policy reclaims.  Install as both a transport filter and an interceptor.
+ *
+ * gRPC does not say why a transport ended, so the reason is inferred when it terminates: no active calls for at least
+ *  maxConnectionIdle => MAX_IDLE; older than maxConnectionAge (less gRPC's 10% jitter) => MAX_AGE; anything else --
+ *  the client closing, a keepalive timeout, a reset -- is OTHER.
+ */
+public class ConnectionLifecycleTracker extends ServerTransportFilter implements ServerInterceptor {
+
+    public enum ReclaimReason {
+        MAX_IDLE,
+        MAX_AGE,
+        OTHER
+    }
+
+    private static final Attributes.Key<Connection> CONNECTION_KEY = Attributes.Key.create("connection-lifecycle");
+
+    // gRPC spreads maxConnectionAge by +/- 10%
+    private static final double MAX_AGE_JITTER = 0.9;
+
+    private final long maxConnectionIdleNanos;
+    private final long maxConnectionAgeNanos;
+
+    private final TransportCensus census = new TransportCensus("grpc-server");
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final Map<ReclaimReason, LongAdder> terminatedCounts = new EnumMap<>(ReclaimReason.class);
+
+    /**
+     * @param maxConnectionIdleMs 0 => no idle policy.
+     * @param maxConnectionAgeMs 0 => no age policy.
+     */
+    public ConnectionLifecycleTracker(long maxConnectionIdleMs, long maxConnectionAgeMs) {
+        this.maxConnectionIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxConnectionIdleMs);
+        this.maxConnectionAgeNanos = (long) (TimeUnit.MILLISECONDS.toNanos(maxConnectionAgeMs) * MAX_AGE_JITTER);
+
+        for (ReclaimReason reason : ReclaimReason.values()) {
+            terminatedCounts.put(reason, new LongAdder());
+        }
+    }
+
+    public TransportCensus getCensus() {
+        return census;
+    }
+
+    public long getTerminatedCount(ReclaimReason reason) {
+        return terminatedCounts.get(reason).sum();
+    }
+
+    public Map<String, Object> getStats() {
+        long now = System.nanoTime();
+        int idle = 0;
+        long longestIdleNanos = 0;
+        for (Connection connection : connections) {
+            if (connection.activeCalls.get() == 0) {
+                idle++;
+                longestIdleNanos = Math.max(longestIdleNanos, now - connection.idleSinceNanos);
+            }
+        }
+
+        Map<String, Object> terminated = new LinkedHashMap<>();
+        for (ReclaimReason reason : ReclaimReason.values()) {
+            terminated.put(reason.name(), terminatedCounts.get(reason).sum());
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("live", connections.size());
+        stats.put("liveIdle", idle);
+        stats.put("longestIdleMillis", TimeUnit.NANOSECONDS.toMillis(longestIdleNanos));
+        stats.put("terminated", terminated);
+        stats.put("census", census.snapshot().toMap());
+        return stats;
+    }
+
+//========================================
+// ServerTransportFilter
+//----------------------------------------
+
+    @Override
+    public Attributes transportReady(Attributes transportAttrs) {
+        Connection connection = new Connection(census.opened(TransportCensus.hostOf(transportAttrs.get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR))));
+        connections.add(connection);
+
+        return transportAttrs.toBuilder().set(CONNECTION_KEY, connection).build();
+    }
+
+    @Override
+    public void transportTerminated(Attributes transportAttrs) {
+        Connection connection = transportAttrs.get(CONNECTION_KEY);
+
+        // Ends before it was ready (e.g. a failed handshake) are not connections of interest
+        if ((connection == null) || (! connections.remove(connection))) {
+            return;
+        }
+
+        connection.censusEntry.closed();
+        terminatedCounts.get(classify(connection, System.nanoTime())).increment();
+    }
+
+//========================================
+// ServerInterceptor
+//----------------------------------------
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        Connection connection = call.getAttributes().get(CONNECTION_KEY);
+        if (connection == null) {
+            return next.startCall(call, headers);
+        }
+
+        connection.activeCalls.incrementAndGet();
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(call, headers)) {
+            @Override
+            public void onComplete() {
+                connection.callEnded();
+                super.onComplete();
+            }
+
+            @Override
+            public void onCancel() {
+                connection.callEnded();
+                super.onCancel();
+            }
+        };
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private ReclaimReason classify(Connection connection, long now) {
+        if ((maxConnectionIdleNanos > 0) && (connection.activeCalls.get() == 0) && (now - connection.idleSinceNanos >= maxConnectionIdleNanos)) {
+            return ReclaimReason.MAX_IDLE;
+        }
+
+        if ((maxConnectionAgeNanos > 0) && (now - connection.openedNanos >= maxConnectionAgeNanos)) {
+            return ReclaimReason.MAX_AGE;
+        }
+
+        return ReclaimReason.OTHER;
+    }
+
+    private static class Connection {
+        private final TransportCensus.Transport censusEntry;
+        private final long openedNanos = System.nanoTime();
+        private final AtomicInteger activeCalls = new AtomicInteger(0);
+        private volatile long idleSinceNanos = openedNanos;
+
+        private Connection(TransportCensus.Transport censusEntry) {
+            this.censusEntry = censusEntry;
+        }
+
+        private void callEnded() {
+            if (activeCalls.decrementAndGet() == 0) {
+                idleSinceNanos = System.nanoTime();
+            }
+        }
+    }
+}
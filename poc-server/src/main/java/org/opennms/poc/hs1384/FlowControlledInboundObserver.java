@@ -0,0 +1,229 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Inbound side of a client-streaming call with manual flow control.  Auto-request is disabled and the call is given a
+ *  fixed window of messages; each message is handed to the delegate on a shared executor, and only once it has been
+ *  handled is the next message requested.  When the executor falls behind, no more messages are requested, the
+ *  HTTP/2 flow-control window closes and the client sees isReady() == false -- instead of messages piling up on the
+ *  server's heap.
+ *
+ * Messages of one call are handled in order, by at most one executor task at a time; at most window messages are
+ *  ever queued.  The delegate's onCompleted/onError follow the last queued message.
+ *
+ * Messages that will never be handled -- queued when the call is cancelled, or when the executor rejects or drops
+ *  the drain task at shutdown -- are passed to the discarder instead, so resources they hold can be released.
+ */
+public class FlowControlledInboundObserver<T> implements StreamObserver<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FlowControlledInboundObserver.class);
+
+    private final ServerCallStreamObserver<?> call;
+    private final StreamObserver<T> delegate;
+    private final Executor executor;
+    private final Consumer<? super T> discarder;
+
+    private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicLong handledCount = new AtomicLong(0);
+
+    private volatile boolean ended;
+    private volatile Throwable error;
+    private volatile boolean endDelivered;
+    private volatile boolean discarding;
+
+    /**
+     * Must be created during the service method, before it returns, so auto-request is disabled in time.
+     *
+     * @param discarder called with each message that is dropped without being handled.
+     */
+    public FlowControlledInboundObserver(ServerCallStreamObserver<?> call, StreamObserver<T> delegate, int window, Executor executor,
+                                         Consumer<? super T> discarder) {
+        this.call = call;
+        this.delegate = delegate;
+        this.executor = executor;
+        this.discarder = discarder;
+
+        call.disableAutoRequest();
+        call.request(window);
+    }
+
+    public long getHandledCount() {
+        return handledCount.get();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Discard the queued messages of the calls whose drain tasks will never run, given the tasks an executor returned
+     *  from {@link java.util.concurrent.ExecutorService#shutdownNow()}; other tasks are ignored.
+     */
+    public static void discardAll(List<Runnable> unrunTasks) {
+        for (Runnable task : unrunTasks) {
+            if (task instanceof FlowControlledInboundObserver<?>.DrainTask drainTask) {
+                drainTask.discard();
+            }
+        }
+    }
+
+    @Override
+    public void onNext(T value) {
+        queue.add(value);
+
+        // Checked after queueing, so a message racing with the switch to discarding is discarded by one side or the other
+        if (discarding) {
+            discardQueued();
+        } else {
+            scheduleDrain();
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        error = t;
+        ended = true;
+        scheduleDrain();
+    }
+
+    @Override
+    public void onCompleted() {
+        ended = true;
+        scheduleDrain();
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(new DrainTask());
+            } catch (RejectedExecutionException rejectedExc) {
+                // Shutting down: leave draining set, nothing will handle this call's messages any more
+                LOG.debug("Inbound drain rejected; discarding queued messages", rejectedExc);
+                discard();
+            }
+        }
+    }
+
+    private void discard() {
+        discarding = true;
+        discardQueued();
+    }
+
+    private void discardQueued() {
+        T next;
+        while ((next = queue.poll()) != null) {
+            discardOne(next);
+        }
+    }
+
+    private void discardOne(T message) {
+        try {
+            discarder.accept(message);
+        } catch (RuntimeException rtExc) {
+            LOG.warn("Failed to discard inbound message", rtExc);
+        }
+    }
+
+    private void drain() {
+        try {
+            T next;
+            while ((next = queue.poll()) != null) {
+                // Nobody will see the outcome of the call any more; release the rest unhandled
+                if (call.isCancelled()) {
+                    discardOne(next);
+                    discardQueued();
+                    break;
+                }
+
+                try {
+                    delegate.onNext(next);
+                } catch (RuntimeException rtExc) {
+                    LOG.warn("Failed to handle inbound message", rtExc);
+                }
+                handledCount.incrementAndGet();
+
+                if (! call.isCancelled()) {
+                    call.request(1);
+                }
+            }
+
+            // ended is set after the last message was queued, so an empty queue here means it was handled
+            if (ended && queue.isEmpty() && (! endDelivered)) {
+                endDelivered = true;
+                if (error != null) {
+                    delegate.onError(error);
+                } else {
+                    delegate.onCompleted();
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+
+        // A message or the end of the call may have raced with the end of the drain
+        if ((! queue.isEmpty()) || (ended && (! endDelivered))) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Distinct type, so the tasks returned by shutdownNow() can be told apart (see {@link #discardAll}).
+     */
+    private class DrainTask implements Runnable {
+        @Override
+        public void run() {
+            drain();
+        }
+
+        private void discard() {
+            FlowControlledInboundObserver.this.discard();
+        }
+    }
+}
@@ -30,16 +30,19 @@
 package org.opennms.poc.hs1384;
 
 import io.grpc.Server;
-import io.grpc.ServerBuilder;
 import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.opennms.poc.hs1384.compression.MessageCompression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class GrpcServer {
@@ -49,18 +52,109 @@ public class GrpcServer {
     @Autowired
     private TestService testService;
 
+    @Autowired
+    private MinionSessionRegistry minionSessionRegistry;
+
+    @Value("${cloud-push.ping-period:10000}")
+    private long pingPeriod = 10_000;
+
+    @Value("${cloud-push.ping-jitter:0.1}")
+    private double pingJitter = 0.1;
+
+    @Value("${grpc-server.port:9990}")
     private int port = 9990;
 
+    @Value("${grpc-server.transport:nio}")
+    private String transport = "nio";
+
+    @Value("${grpc-server.boss-threads:1}")
+    private int bossThreads = 1;
+
+    @Value("${grpc-server.worker-threads:0}")
+    private int workerThreads = 0;
+
+    @Value("${grpc-server.executor:cached}")
+    private String executor = "cached";
+
+    @Value("${grpc-server.executor-threads:16}")
+    private int executorThreads = 16;
+
+    @Value("${grpc-server.max-concurrent-calls-per-connection:0}")
+    private int maxConcurrentCallsPerConnection = 0;
+
+    @Value("${grpc-server.keepalive-time:0}")
+    private long keepAliveTime = 0;
+
+    @Value("${grpc-server.keepalive-timeout:0}")
+    private long keepAliveTimeout = 0;
+
+    @Value("${grpc-server.permit-keepalive-time:0}")
+    private long permitKeepAliveTime = 0;
+
+    @Value("${grpc-server.permit-keepalive-without-calls:false}")
+    private boolean permitKeepAliveWithoutCalls = false;
+
+    @Value("${grpc-server.max-connection-idle:0}")
+    private long maxConnectionIdle = 0;
+
+    @Value("${grpc-server.max-connection-age:0}")
+    private long maxConnectionAge = 0;
+
+    @Value("${grpc-server.max-connection-age-grace:0}")
+    private long maxConnectionAgeGrace = 0;
+
+    @Value("${grpc-server.compression:identity}")
+    private String compression = "identity";
+
+    @Value("${grpc-server.compression-min-bytes:256}")
+    private int compressionMinBytes = 256;
+
     private Server server;
+    private NettyServerTuning tuning;
+    private ConnectionLifecycleTracker connectionLifecycleTracker;
+    private MessageCompression messageCompression;
+    private PingScheduler pingScheduler;
 
     @PostConstruct
     public void init() {
-        ServerBuilder
-            serverBuilder = NettyServerBuilder.forAddress(new InetSocketAddress(port))
+        tuning = new NettyServerTuning();
+        tuning.setTransport(NettyServerTuning.Transport.valueOf(transport.toUpperCase()));
+        tuning.setBossThreads(bossThreads);
+        tuning.setWorkerThreads(workerThreads);
+        tuning.setExecutorType(NettyServerTuning.ExecutorType.valueOf(executor.toUpperCase()));
+        tuning.setExecutorThreads(executorThreads);
+        tuning.setMaxConcurrentCallsPerConnection(maxConcurrentCallsPerConnection);
+        tuning.setKeepAliveTimeMs(keepAliveTime);
+        tuning.setKeepAliveTimeoutMs(keepAliveTimeout);
+        tuning.setPermitKeepAliveTimeMs(permitKeepAliveTime);
+        tuning.setPermitKeepAliveWithoutCalls(permitKeepAliveWithoutCalls);
+        tuning.setMaxConnectionIdleMs(maxConnectionIdle);
+        tuning.setMaxConnectionAgeMs(maxConnectionAge);
+        tuning.setMaxConnectionAgeGraceMs(maxConnectionAgeGrace);
+
+        connectionLifecycleTracker = new ConnectionLifecycleTracker(maxConnectionIdle, maxConnectionAge);
+
+        messageCompression = new MessageCompression(MessageCompression.Encoding.valueOf(compression.toUpperCase()), compressionMinBytes);
+
+        NettyServerBuilder
+            serverBuilder = tuning.newServerBuilder(new InetSocketAddress(port))
                 .maxInboundMessageSize(1_000_000)
+                .compressorRegistry(messageCompression.getCompressorRegistry())
+                .decompressorRegistry(messageCompression.getDecompressorRegistry())
                 ;
 
-        serverBuilder.addService(testService);
+        serverBuilder.addService(testService.getServiceDefinition());
+        serverBuilder.addTransportFilter(connectionLifecycleTracker);
+        serverBuilder.intercept(connectionLifecycleTracker);
+        serverBuilder.intercept(messageCompression);
+        serverBuilder.addStreamTracerFactory(messageCompression.getServerStreamTracerFactory());
+
+        if (pingPeriod > 0) {
+            pingScheduler = new PingScheduler(pingPeriod, pingJitter, minionSessionRegistry::ping);
+            pingScheduler.start();
+
+            minionSessionRegistry.setPingScheduler(pingScheduler);
+        }
 
         server = serverBuilder.build();
 
@@ -73,4 +167,31 @@ public class GrpcServer {
         }
     }
 
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (pingScheduler != null) {
+            pingScheduler.shutdown();
+        }
+
+        server.shutdown();
+        if (! server.awaitTermination(5, TimeUnit.SECONDS)) {
+            server.shutdownNow();
+        }
+        tuning.shutdown();
+
+        LOG.info("CONNECTION LIFECYCLE at shutdown: {}", connectionLifecycleTracker.getStats());
+        LOG.info("COMPRESSION at shutdown: {}", messageCompression);
+    }
+
+    public PingScheduler getPingScheduler() {
+        return pingScheduler;
+    }
+
+    public ConnectionLifecycleTracker getConnectionLifecycleTracker() {
+        return connectionLifecycleTracker;
+    }
+
+    public MessageCompression getMessageCompression() {
+        return messageCompression;
+    }
 }
@@ -0,0 +1,245 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel holding one-shot timeouts.  Scheduling and cancelling are O(1), and expiring only touches the
+ *  bucket for each elapsed tick, so a single thread can drive timeouts for a very large number of connections.
+ *
+ * NOT thread-safe: the wheel must be owned, scheduled and expired by a single thread (e.g. an event loop).
+ *
+ * @param <T> type of the task attached to each timeout.
+ */
+public class HashedTimerWheel<T> {
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Bucket<T>[] buckets;
+    private final int mask;
+
+    /** Next tick that has not yet been processed. */
+    private long currentTick;
+    /** Earliest tick a new timeout may land on: past the last tick of the expire() in progress, if any. */
+    private long firstSchedulableTick;
+    private int size;
+    private boolean stopped;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimerWheel(long tickDuration, TimeUnit unit, int ticksPerWheel, long nowNanos) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tick duration must be positive: " + tickDuration);
+        }
+
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.startNanos = nowNanos;
+
+        int wheelSize = 1;
+        while (wheelSize < ticksPerWheel) {
+            wheelSize <<= 1;
+        }
+
+        this.buckets = (Bucket<T>[]) new Bucket<?>[wheelSize];
+        for (int cur = 0; cur < wheelSize; cur++) {
+            this.buckets[cur] = new Bucket<>();
+        }
+        this.mask = wheelSize - 1;
+    }
+
+//========================================
+// Interface
+//----------------------------------------
+
+    /**
+     * @throws IllegalStateException the wheel was stopped.
+     */
+    public Timeout<T> schedule(T task, long delay, TimeUnit unit, long nowNanos) {
+        if (stopped) {
+            throw new IllegalStateException("timer wheel stopped");
+        }
+
+        long elapsed = nowNanos - startNanos + unit.toNanos(Math.max(0, delay));
+        long deadlineTick = Math.max(firstSchedulableTick, (elapsed + tickNanos - 1) / tickNanos);
+
+        Timeout<T> timeout = new Timeout<>(this, task);
+        timeout.remainingRounds = (deadlineTick - currentTick) / buckets.length;
+        buckets[(int) (deadlineTick & mask)].add(timeout);
+        size++;
+
+        return timeout;
+    }
+
+    /**
+     * Process every tick that elapsed up to the given time, passing the task of each expired timeout to the handler.
+     *  The handler may schedule new timeouts, even with a zero delay: they land after the last tick processed by this
+     *  call, so are never expired within it.  The handler must not cancel timeouts other than the one being expired.
+     *
+     * @return number of timeouts expired.
+     */
+    public int expire(long nowNanos, Consumer<? super T> handler) {
+        long targetTick = (nowNanos - startNanos) / tickNanos;
+        int count = 0;
+
+        firstSchedulableTick = Math.max(firstSchedulableTick, targetTick + 1);
+
+        while (currentTick <= targetTick) {
+            Bucket<T> bucket = buckets[(int) (currentTick & mask)];
+            currentTick++;
+
+            Timeout<T> timeout = bucket.head;
+            Timeout<T> end = bucket.tail;
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                boolean last = (timeout == end);
+
+                if (timeout.remainingRounds <= 0) {
+                    bucket.remove(timeout);
+                    size--;
+                    count++;
+
+                    handler.accept(timeout.task);
+                } else {
+                    timeout.remainingRounds--;
+                }
+
+                if (last) {
+                    break;
+                }
+                timeout = next;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Remove every pending timeout and refuse new ones, so the owner can dispose of their tasks on shutdown.
+     *
+     * @return the timeouts that were pending, no longer pending now; in no particular order.
+     */
+    public List<Timeout<T>> stop() {
+        stopped = true;
+
+        List<Timeout<T>> pending = new ArrayList<>(size);
+        for (Bucket<T> bucket : buckets) {
+            Timeout<T> timeout;
+            while ((timeout = bucket.head) != null) {
+                bucket.remove(timeout);
+                pending.add(timeout);
+            }
+        }
+        size = 0;
+
+        return pending;
+    }
+
+    public long getTickDuration(TimeUnit unit) {
+        return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public int size() {
+        return size;
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private static final class Bucket<T> {
+        private Timeout<T> head;
+        private Timeout<T> tail;
+
+        private void add(Timeout<T> timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        private void remove(Timeout<T> timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+
+    public static final class Timeout<T> {
+        private final HashedTimerWheel<T> wheel;
+        private final T task;
+
+        private Bucket<T> bucket;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private long remainingRounds;
+
+        private Timeout(HashedTimerWheel<T> wheel, T task) {
+            this.wheel = wheel;
+            this.task = task;
+        }
+
+        public T getTask() {
+            return task;
+        }
+
+        public boolean isPending() {
+            return bucket != null;
+        }
+
+        /**
+         * Remove the timeout from the wheel; must be called from the thread owning the wheel.
+         */
+        public void cancel() {
+            if (bucket != null) {
+                bucket.remove(this);
+                wheel.size--;
+            }
+        }
+    }
+}
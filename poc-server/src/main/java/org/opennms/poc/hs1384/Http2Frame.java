@@ -0,0 +1,79 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Immutable, fully encoded HTTP/2 frame (header + payload), built by {@link Http2FrameFormatter}.
+ *
+ * Sending never needs to re-encode or copy the frame: NIO writers take a {@link #view()} once per thread (or per
+ *  connection), then {@link ByteBuffer#rewind()} it before each write; stream writers use {@link #writeTo}.
+ */
+public final class Http2Frame {
+
+    private final byte[] encoded;
+    private final ByteBuffer readOnly;
+
+    Http2Frame(byte[] encoded) {
+        this.encoded = encoded;
+        this.readOnly = ByteBuffer.wrap(encoded).asReadOnlyBuffer();
+    }
+
+    public int getType() {
+        return encoded[3] & 0xff;
+    }
+
+    /**
+     * @return total size of the frame on the wire, including the 9 byte header.
+     */
+    public int size() {
+        return encoded.length;
+    }
+
+    /**
+     * @return a new read-only view of the frame, positioned at the start.  The view has its own position and limit,
+     *  so it may be kept and reused by a single thread.
+     */
+    public ByteBuffer view() {
+        return readOnly.duplicate();
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(encoded);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(encoded, encoded.length);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * Writes a fixed sequence of pre-encoded frames with a single gathering write, so e.g. SETTINGS + GOAWAY leave in one
+ *  syscall (and typically one TCP segment) instead of one write + flush per frame.
+ *
+ * The writer keeps one reusable view per frame, so writes do not allocate.  NOT thread-safe: use one instance per
+ *  thread (or per connection).
+ */
+public class Http2FrameBatchWriter {
+
+    private final ByteBuffer[] views;
+    private final long batchSize;
+
+    public Http2FrameBatchWriter(Http2Frame... frames) {
+        if (frames.length == 0) {
+            throw new IllegalArgumentException("at least one frame is required");
+        }
+
+        this.views = new ByteBuffer[frames.length];
+
+        long total = 0;
+        for (int cur = 0; cur < frames.length; cur++) {
+            views[cur] = frames[cur].view();
+            total += frames[cur].size();
+        }
+        this.batchSize = total;
+    }
+
+    /**
+     * Write the whole batch from the start.  A blocking channel writes the complete batch; a non-blocking channel may
+     *  take only part of it, in which case the rest is available from {@link #copyRemaining()}.
+     *
+     * @return number of bytes written.
+     */
+    public long write(GatheringByteChannel channel) throws IOException {
+        reset();
+
+        return channel.write(views);
+    }
+
+    /**
+     * Rewind the batch to the start without writing; {@link #copyRemaining()} then returns the full batch.
+     */
+    public void reset() {
+        for (ByteBuffer view : views) {
+            view.rewind();
+        }
+    }
+
+    public boolean hasRemaining() {
+        return views[views.length - 1].hasRemaining();
+    }
+
+    /**
+     * @return a new buffer holding the bytes the last {@link #write} did not send (or the whole batch after
+     *  {@link #reset()}).
+     */
+    public ByteBuffer copyRemaining() {
+        int remaining = 0;
+        for (ByteBuffer view : views) {
+            remaining += view.remaining();
+        }
+
+        ByteBuffer copy = ByteBuffer.allocate(remaining);
+        for (ByteBuffer view : views) {
+            copy.put(view);
+        }
+        copy.flip();
+
+        return copy;
+    }
+
+    public long getBatchSize() {
+        return batchSize;
+    }
+}
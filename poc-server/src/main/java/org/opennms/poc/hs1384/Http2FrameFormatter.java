@@ -31,7 +31,9 @@ package org.opennms.poc.hs1384;
 
 import org.springframework.stereotype.Component;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 // HTTP Frame {
 //   Length (24),
@@ -47,32 +49,116 @@ import java.io.ByteArrayOutputStream;
 @Component
 public class Http2FrameFormatter {
 
+    public static final int FRAME_HEADER_LENGTH = 9;
+
+    public static final int TYPE_SETTINGS = 0x04;
+    public static final int TYPE_PING = 0x06;
+    public static final int TYPE_GOAWAY = 0x07;
+
+    public static final int FLAG_ACK = 0x01;
+
+    public static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x03;
+
+    public static final int ERROR_NO_ERROR = 0x00;
+
+    /**
+     * GOAWAY with last-stream-id 0, NO_ERROR and no debug data.
+     */
+    private static final Http2Frame DEFAULT_GOAWAY_FRAME = goAway().build();
+
+    /**
+     * SETTINGS with SETTINGS_MAX_CONCURRENT_STREAMS = 2^31-1.
+     */
+    private static final Http2Frame DEFAULT_SETTINGS_FRAME =
+            settings().setting(SETTINGS_MAX_CONCURRENT_STREAMS, 0x7fffffff).build();
+
+    public Http2Frame getGoAwayFrame() {
+        return DEFAULT_GOAWAY_FRAME;
+    }
+
+    public Http2Frame getSettingsFrame() {
+        return DEFAULT_SETTINGS_FRAME;
+    }
+
+    /**
+     * @return a copy of the pre-encoded GOAWAY frame; prefer {@link #getGoAwayFrame()}.
+     */
     public byte[] formatGoAwayFrame() {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        return DEFAULT_GOAWAY_FRAME.toByteArray();
+    }
 
-        // LENGTH = 8 (FOR some reason, the client code rejects 0 and expects at least 8)
-        byteArrayOutputStream.write(0);
-        byteArrayOutputStream.write(0);
-        byteArrayOutputStream.write(8);
+    /**
+     * @return a copy of the pre-encoded SETTINGS frame; prefer {@link #getSettingsFrame()}.
+     */
+    public byte[] formatSettingsFrame() {
+        return DEFAULT_SETTINGS_FRAME.toByteArray();
+    }
 
-        // TYPE = 7 (goaway)
-        byteArrayOutputStream.write(7);
+    public static GoAwayBuilder goAway() {
+        return new GoAwayBuilder();
+    }
 
-        // FLAGS = 0
-        byteArrayOutputStream.write(0);
+    public static SettingsBuilder settings() {
+        return new SettingsBuilder();
+    }
 
-        // STREAM IDENTIFIER
-        byteArrayOutputStream.write(0);
-        byteArrayOutputStream.write(0);
-        byteArrayOutputStream.write(0);
-        byteArrayOutputStream.write(0);
-
-        // Debug data (padding - see the length comment)
-        for (int paddingCounter = 0; paddingCounter < 8; paddingCounter++) {
-            byteArrayOutputStream.write(0);
+    public static PingBuilder ping() {
+        return new PingBuilder();
+    }
+
+//========================================
+// Builders
+//----------------------------------------
+
+    /**
+     * GOAWAY Frame {
+     *   Length (24),
+     *   Type (8) = 0x07,
+     *
+     *   Unused Flags (8),
+     *
+     *   Reserved (1),
+     *   Stream Identifier (31) = 0,
+     *
+     *   Reserved (1),
+     *   Last-Stream-ID (31),
+     *   Error Code (32),
+     *   Additional Debug Data (..),
+     * }
+     *
+     * Note the payload is at least 8 bytes; clients reject shorter GOAWAY frames.
+     */
+    public static final class GoAwayBuilder {
+        private int lastStreamId;
+        private int errorCode = ERROR_NO_ERROR;
+        private byte[] debugData = new byte[0];
+
+        private GoAwayBuilder() {
         }
 
-        return byteArrayOutputStream.toByteArray();
+        public GoAwayBuilder lastStreamId(int lastStreamId) {
+            this.lastStreamId = lastStreamId & 0x7fffffff;
+            return this;
+        }
+
+        public GoAwayBuilder errorCode(int errorCode) {
+            this.errorCode = errorCode;
+            return this;
+        }
+
+        public GoAwayBuilder debugData(byte[] debugData) {
+            this.debugData = debugData.clone();
+            return this;
+        }
+
+        public Http2Frame build() {
+            ByteBuffer buffer = startFrame(8 + debugData.length, TYPE_GOAWAY, 0);
+            buffer.putInt(lastStreamId);
+            buffer.putInt(errorCode);
+            buffer.put(debugData);
+
+            return new Http2Frame(buffer.array());
+        }
     }
 
     /**
@@ -93,38 +179,106 @@ public class Http2FrameFormatter {
      *   Identifier (16),
      *   Value (32),
      * }
+     */
+    public static final class SettingsBuilder {
+        private final List<int[]> entries = new ArrayList<>();
+        private boolean ack;
+
+        private SettingsBuilder() {
+        }
+
+        public SettingsBuilder setting(int identifier, int value) {
+            entries.add(new int[] { identifier, value });
+            return this;
+        }
+
+        /**
+         * Build a SETTINGS ACK; an ACK must not carry any settings.
+         */
+        public SettingsBuilder ack() {
+            this.ack = true;
+            return this;
+        }
+
+        public Http2Frame build() {
+            if (ack && ! entries.isEmpty()) {
+                throw new IllegalStateException("SETTINGS ACK frame cannot carry settings");
+            }
+
+            ByteBuffer buffer = startFrame(6 * entries.size(), TYPE_SETTINGS, ack ? FLAG_ACK : 0);
+            for (int[] entry : entries) {
+                buffer.putShort((short) entry[0]);
+                buffer.putInt(entry[1]);
+            }
+
+            return new Http2Frame(buffer.array());
+        }
+    }
+
+    /**
+     * PING Frame {
+     *   Length (24) = 0x08,
+     *   Type (8) = 0x06,
+     *
+     *   Unused Flags (7),
+     *   ACK Flag (1),
+     *
+     *   Reserved (1),
+     *   Stream Identifier (31) = 0,
      *
-     * @return
+     *   Opaque Data (64),
+     * }
      */
-    public byte[] formatSettingsFrame() {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    public static final class PingBuilder {
+        private long opaqueData;
+        private boolean ack;
 
-        // LENGTH = 6
-        byteArrayOutputStream.write(0);
-        byteArrayOutputStream.write(0);
-        byteArrayOutputStream.write(6);
+        private PingBuilder() {
+        }
 
-        // TYPE = 4 (settings)
-        byteArrayOutputStream.write(4);
+        public PingBuilder opaqueData(long opaqueData) {
+            this.opaqueData = opaqueData;
+            return this;
+        }
 
-        // FLAGS = 0 (ACK Flag = 0)
-        byteArrayOutputStream.write(0);
+        public PingBuilder ack() {
+            this.ack = true;
+            return this;
+        }
 
-        // STREAM IDENTIFIER
-        byteArrayOutputStream.write(0);
-        byteArrayOutputStream.write(0);
-        byteArrayOutputStream.write(0);
-        byteArrayOutputStream.write(0);
+        public Http2Frame build() {
+            ByteBuffer buffer = startFrame(8, TYPE_PING, ack ? FLAG_ACK : 0);
+            buffer.putLong(opaqueData);
 
-        // SETTINGS_MAX_CONCURRENT_STREAMS
-        byteArrayOutputStream.write(0);
-        byteArrayOutputStream.write(3);
-        byteArrayOutputStream.write(0x7f);
-        byteArrayOutputStream.write(0xff);
-        byteArrayOutputStream.write(0xff);
-        byteArrayOutputStream.write(0xff);
+            return new Http2Frame(buffer.array());
+        }
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    /**
+     * Allocate the buffer for a complete frame and write the frame header for stream 0.
+     */
+    private static ByteBuffer startFrame(int payloadLength, int type, int flags) {
+        if (payloadLength > 0xffffff) {
+            throw new IllegalArgumentException("frame payload too large: " + payloadLength);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_HEADER_LENGTH + payloadLength);
+
+        // LENGTH
+        buffer.put((byte) (payloadLength >>> 16));
+        buffer.put((byte) (payloadLength >>> 8));
+        buffer.put((byte) payloadLength);
 
+        buffer.put((byte) type);
+        buffer.put((byte) flags);
+
+        // STREAM IDENTIFIER
+        buffer.putInt(0);
 
-        return byteArrayOutputStream.toByteArray();
+        return buffer;
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import org.opennms.poc.hs1384.journal.LifecycleJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Journal of the CTF server's socket opens and closes and GOAWAY frames, written to journal.file when it is set.
+ *  Merge it with the client's journal using {@link org.opennms.poc.hs1384.journal.LifecycleJournalReader}.
+ */
+@Component
+public class LifecycleJournalService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LifecycleJournalService.class);
+
+    @Value("${journal.file:}")
+    private String journalFile = "";
+
+    @Value("${journal.capacity:65536}")
+    private int journalCapacity = 65_536;
+
+    @Autowired
+    private TransportCensusService transportCensusService;
+
+    private LifecycleJournal journal = LifecycleJournal.disabled();
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (! journalFile.isEmpty()) {
+            journal = LifecycleJournal.open(Path.of(journalFile), "ctf-server", journalCapacity);
+            transportCensusService.getCensus().setJournal(journal);
+
+            LOG.info("Journaling CTF connection lifecycle events to {} ({} records)", journalFile, journalCapacity);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (journal.isEnabled()) {
+            LOG.info("JOURNAL: {} record(s) written to {}", journal.getRecordCount(), journalFile);
+            journal.close();
+        }
+    }
+
+    public LifecycleJournal getJournal() {
+        return journal;
+    }
+}
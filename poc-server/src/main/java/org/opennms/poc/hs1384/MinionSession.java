@@ -0,0 +1,181 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import org.opennms.poc.hs1384.grpc.CloudToMinionMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One connected Minion's cloud-to-minion stream.  Pushes are queued in a bounded queue (newest message is dropped
+ *  when full) and drained onto the stream by at most one executor task at a time, since StreamObserver is not
+ *  thread-safe; every call on the outbound observer, including onCompleted, happens in the drain task.
+ *
+ * The drain only writes while the stream is ready, so a Minion that stops reading holds at most the queue; the
+ *  stream's on-ready handler ({@link #onReady}) resumes it.
+ */
+public class MinionSession {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MinionSession.class);
+
+    private final String minionId;
+    private final ServerCallStreamObserver<CloudToMinionMessage> outbound;
+    private final Queue<CloudToMinionMessage> queue;
+    private final Executor drainExecutor;
+    private final long createdNanos = System.nanoTime();
+
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicBoolean completePending = new AtomicBoolean(false);
+    private final AtomicLong sentCount = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+
+    public MinionSession(String minionId, ServerCallStreamObserver<CloudToMinionMessage> outbound, int queueSize, Executor drainExecutor) {
+        this.minionId = minionId;
+        this.outbound = outbound;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.drainExecutor = drainExecutor;
+    }
+
+//========================================
+// Getters
+//----------------------------------------
+
+    public String getMinionId() {
+        return minionId;
+    }
+
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+//========================================
+// Interface
+//----------------------------------------
+
+    /**
+     * @return true => queued for delivery; false => queue full (or session closed) and the message was dropped.
+     */
+    public boolean push(CloudToMinionMessage message) {
+        if (closed.get() || ! queue.offer(message)) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * Complete the stream; used when a newer session replaces this one, or on shutdown.
+     */
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            queue.clear();
+            completePending.set(true);
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * The outbound stream became ready again; resume draining.
+     */
+    public void onReady() {
+        if (! queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Mark the session closed after the underlying stream ended; nothing more is sent.
+     */
+    public void terminated() {
+        closed.set(true);
+        queue.clear();
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            drainExecutor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            CloudToMinionMessage next;
+            while ((! closed.get()) && outbound.isReady() && ((next = queue.poll()) != null)) {
+                outbound.onNext(next);
+                sentCount.incrementAndGet();
+            }
+
+            if (completePending.compareAndSet(true, false)) {
+                outbound.onCompleted();
+            }
+        } catch (RuntimeException rtExc) {
+            LOG.info("push to minion {} failed; closing session", minionId, rtExc);
+            completePending.set(false);
+            terminated();
+        } finally {
+            draining.set(false);
+        }
+
+        // A push, close or on-ready may have raced with the end of the drain
+        if (completePending.get() || ((! closed.get()) && outbound.isReady() && (! queue.isEmpty()))) {
+            scheduleDrain();
+        }
+    }
+}
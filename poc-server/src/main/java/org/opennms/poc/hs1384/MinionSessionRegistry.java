@@ -0,0 +1,271 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.opennms.poc.hs1384.grpc.CloudToMinionAck;
+import org.opennms.poc.hs1384.grpc.CloudToMinionMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of the connected Minions' cloud-to-minion sessions, keyed by Minion ID, plus the push API used to send
+ *  messages to one or all of them.
+ */
+@Component
+public class MinionSessionRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MinionSessionRegistry.class);
+
+    @Value("${cloud-push.queue-size:100}")
+    private int queueSize = 100;
+
+    @Value("${cloud-push.threads:4}")
+    private int numThreads = 4;
+
+    private final Map<String, MinionSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong sequenceGenerator = new AtomicLong(0);
+
+    private final AckLatency pushAckLatency = new AckLatency();
+    private final AckLatency pingAckLatency = new AckLatency();
+
+    private ExecutorService drainExecutor;
+    private PingScheduler pingScheduler;
+
+    @PostConstruct
+    public void init() {
+        drainExecutor = Executors.newFixedThreadPool(
+                numThreads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("cloud-push-%d").build()
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sessions.values().forEach(MinionSession::close);
+        drainExecutor.shutdown();
+    }
+
+    /**
+     * Set the scheduler that pings every session registered from now on.
+     */
+    public void setPingScheduler(PingScheduler pingScheduler) {
+        this.pingScheduler = pingScheduler;
+    }
+
+//========================================
+// Sessions
+//----------------------------------------
+
+    /**
+     * Register the stream for the given Minion; any previous session for the same Minion is closed and replaced.
+     */
+    public MinionSession register(String minionId, ServerCallStreamObserver<CloudToMinionMessage> outbound) {
+        MinionSession session = new MinionSession(minionId, outbound, queueSize, drainExecutor);
+        MinionSession previous = sessions.put(minionId, session);
+
+        if (previous != null) {
+            LOG.info("Minion {} reconnected; replacing previous session", minionId);
+            previous.close();
+        }
+
+        if (pingScheduler != null) {
+            pingScheduler.schedule(session);
+        }
+
+        LOG.debug("Registered session for minion {}; {} session(s)", minionId, sessions.size());
+        return session;
+    }
+
+    public void unregister(MinionSession session) {
+        session.terminated();
+        sessions.remove(session.getMinionId(), session);
+    }
+
+    public MinionSession getSession(String minionId) {
+        return sessions.get(minionId);
+    }
+
+    public Collection<MinionSession> getSessions() {
+        return sessions.values();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+//========================================
+// Push API
+//----------------------------------------
+
+    /**
+     * @return true => queued; false => unknown minion, or its queue is full.
+     */
+    public boolean push(String minionId, String payload) {
+        MinionSession session = sessions.get(minionId);
+        if (session == null) {
+            return false;
+        }
+
+        return session.push(createMessage(payload));
+    }
+
+    /**
+     * Fan the payload out to every connected Minion.  The message is built once and shared by all sessions.
+     */
+    public PushResult broadcast(String payload) {
+        long start = System.nanoTime();
+        CloudToMinionMessage message = createMessage(payload);
+
+        int queued = 0;
+        int dropped = 0;
+        for (MinionSession session : sessions.values()) {
+            if (session.push(message)) {
+                queued++;
+            } else {
+                dropped++;
+            }
+        }
+
+        return new PushResult(queued, dropped, System.nanoTime() - start);
+    }
+
+    /**
+     * Queue an application-level ping on the session.
+     */
+    public boolean ping(MinionSession session) {
+        CloudToMinionMessage ping = CloudToMinionMessage.newBuilder()
+                .setSequence(sequenceGenerator.incrementAndGet())
+                .setSentTimeNanos(System.nanoTime())
+                .setPing(true)
+                .build();
+
+        return session.push(ping);
+    }
+
+    /**
+     * Record the round trip of an acked message; pings are kept apart so the periodic pings don't skew the push latency.
+     */
+    public void recordAck(CloudToMinionAck ack) {
+        long latency = System.nanoTime() - ack.getSentTimeNanos();
+
+        if (ack.getPing()) {
+            pingAckLatency.record(latency);
+        } else {
+            pushAckLatency.record(latency);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long sent = 0;
+        long dropped = 0;
+        long queued = 0;
+        for (MinionSession session : sessions.values()) {
+            sent += session.getSentCount();
+            dropped += session.getDroppedCount();
+            queued += session.getQueueDepth();
+        }
+
+        int sessionCount = sessions.size();
+        Runtime runtime = Runtime.getRuntime();
+        long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", sessionCount);
+        stats.put("sent", sent);
+        stats.put("dropped", dropped);
+        stats.put("queued", queued);
+        stats.put("acks", pushAckLatency.count.sum());
+        stats.put("ackLatencyAvgMicros", pushAckLatency.getAverageMicros());
+        stats.put("ackLatencyMaxMicros", pushAckLatency.getMaxMicros());
+        stats.put("pingAcks", pingAckLatency.count.sum());
+        stats.put("pingAckLatencyAvgMicros", pingAckLatency.getAverageMicros());
+        stats.put("pingAckLatencyMaxMicros", pingAckLatency.getMaxMicros());
+        stats.put("heapUsedBytes", heapUsed);
+        stats.put("heapUsedPerSessionBytes", (sessionCount == 0) ? 0 : heapUsed / sessionCount);
+
+        if (pingScheduler != null) {
+            stats.put("ping", pingScheduler.getStats());
+        }
+
+        return stats;
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private CloudToMinionMessage createMessage(String payload) {
+        return CloudToMinionMessage.newBuilder()
+                .setSequence(sequenceGenerator.incrementAndGet())
+                .setSentTimeNanos(System.nanoTime())
+                .setPayload(payload)
+                .build();
+    }
+
+    private static final class AckLatency {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+        private void record(long latencyNanos) {
+            count.increment();
+            totalNanos.add(latencyNanos);
+            maxNanos.accumulate(latencyNanos);
+        }
+
+        private long getAverageMicros() {
+            long acks = count.sum();
+            return (acks == 0) ? 0 : (totalNanos.sum() / acks) / 1_000;
+        }
+
+        private long getMaxMicros() {
+            return maxNanos.get() / 1_000;
+        }
+    }
+
+    public record PushResult(int queued, int dropped, long fanOutNanos) {
+    }
+}
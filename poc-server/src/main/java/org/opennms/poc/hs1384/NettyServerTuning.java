@@ -0,0 +1,325 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.ServerChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.SocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Netty transport, threading and HTTP/2 settings of a gRPC server, shared by GrpcServer and the benchmarks.  Builders
+ *  created by {@link #newServerBuilder} own event-loop groups and possibly an executor; call {@link #shutdown} after
+ *  the server has terminated to release them.
+ *
+ * Zero (or negative) values leave the gRPC/Netty default in place.
+ */
+public class NettyServerTuning {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NettyServerTuning.class);
+
+    public enum Transport {
+        /** Epoll when the native library loads, NIO otherwise; opt-in, since it changes the transport on Linux. */
+        AUTO,
+        EPOLL,
+        /** What gRPC's NettyServerBuilder uses by itself; the default. */
+        NIO
+    }
+
+    public enum ExecutorType {
+        /** gRPC's shared, unbounded cached thread pool. */
+        CACHED,
+        /** A fixed pool of executorThreads threads. */
+        FIXED,
+        /** Run application callbacks on the event loops; handlers must never block. */
+        DIRECT
+    }
+
+    private Transport transport = Transport.NIO;
+    private int bossThreads = 1;
+    private int workerThreads;
+    private ExecutorType executorType = ExecutorType.CACHED;
+    private int executorThreads = 16;
+    private int maxConcurrentCallsPerConnection;
+    private long keepAliveTimeMs;
+    private long keepAliveTimeoutMs;
+    private long permitKeepAliveTimeMs;
+    private boolean permitKeepAliveWithoutCalls;
+    private long maxConnectionIdleMs;
+    private long maxConnectionAgeMs;
+    private long maxConnectionAgeGraceMs;
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private ExecutorService executor;
+
+//========================================
+// Getters and Setters
+//----------------------------------------
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    public int getBossThreads() {
+        return bossThreads;
+    }
+
+    public void setBossThreads(int bossThreads) {
+        this.bossThreads = bossThreads;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * @param workerThreads 0 => Netty default, 2 x cores.
+     */
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public ExecutorType getExecutorType() {
+        return executorType;
+    }
+
+    public void setExecutorType(ExecutorType executorType) {
+        this.executorType = executorType;
+    }
+
+    public int getExecutorThreads() {
+        return executorThreads;
+    }
+
+    public void setExecutorThreads(int executorThreads) {
+        this.executorThreads = executorThreads;
+    }
+
+    public int getMaxConcurrentCallsPerConnection() {
+        return maxConcurrentCallsPerConnection;
+    }
+
+    public void setMaxConcurrentCallsPerConnection(int maxConcurrentCallsPerConnection) {
+        this.maxConcurrentCallsPerConnection = maxConcurrentCallsPerConnection;
+    }
+
+    public long getKeepAliveTimeMs() {
+        return keepAliveTimeMs;
+    }
+
+    public void setKeepAliveTimeMs(long keepAliveTimeMs) {
+        this.keepAliveTimeMs = keepAliveTimeMs;
+    }
+
+    public long getKeepAliveTimeoutMs() {
+        return keepAliveTimeoutMs;
+    }
+
+    public void setKeepAliveTimeoutMs(long keepAliveTimeoutMs) {
+        this.keepAliveTimeoutMs = keepAliveTimeoutMs;
+    }
+
+    public long getPermitKeepAliveTimeMs() {
+        return permitKeepAliveTimeMs;
+    }
+
+    /**
+     * @param permitKeepAliveTimeMs minimum interval between client keepalive pings; clients pinging more often get a
+     *                              GOAWAY (ENHANCE_YOUR_CALM).
+     */
+    public void setPermitKeepAliveTimeMs(long permitKeepAliveTimeMs) {
+        this.permitKeepAliveTimeMs = permitKeepAliveTimeMs;
+    }
+
+    public boolean isPermitKeepAliveWithoutCalls() {
+        return permitKeepAliveWithoutCalls;
+    }
+
+    /**
+     * @param permitKeepAliveWithoutCalls false => clients pinging while they have no calls get a GOAWAY.
+     */
+    public void setPermitKeepAliveWithoutCalls(boolean permitKeepAliveWithoutCalls) {
+        this.permitKeepAliveWithoutCalls = permitKeepAliveWithoutCalls;
+    }
+
+    public long getMaxConnectionIdleMs() {
+        return maxConnectionIdleMs;
+    }
+
+    /**
+     * @param maxConnectionIdleMs close connections (GOAWAY) that have had no calls for this long.
+     */
+    public void setMaxConnectionIdleMs(long maxConnectionIdleMs) {
+        this.maxConnectionIdleMs = maxConnectionIdleMs;
+    }
+
+    public long getMaxConnectionAgeMs() {
+        return maxConnectionAgeMs;
+    }
+
+    /**
+     * @param maxConnectionAgeMs close connections (GOAWAY) older than this, +/- 10% jitter, whatever their calls.
+     */
+    public void setMaxConnectionAgeMs(long maxConnectionAgeMs) {
+        this.maxConnectionAgeMs = maxConnectionAgeMs;
+    }
+
+    public long getMaxConnectionAgeGraceMs() {
+        return maxConnectionAgeGraceMs;
+    }
+
+    /**
+     * @param maxConnectionAgeGraceMs time calls get to finish after a max-age GOAWAY before the connection is closed.
+     */
+    public void setMaxConnectionAgeGraceMs(long maxConnectionAgeGraceMs) {
+        this.maxConnectionAgeGraceMs = maxConnectionAgeGraceMs;
+    }
+
+//========================================
+// Interface
+//----------------------------------------
+
+    public NettyServerBuilder newServerBuilder(SocketAddress address) {
+        boolean epoll = useEpoll();
+        Class<? extends ServerChannel> channelType = epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+
+        bossGroup = createEventLoopGroup(epoll, bossThreads, "grpc-boss-%d");
+        workerGroup = createEventLoopGroup(epoll, workerThreads, "grpc-worker-%d");
+
+        NettyServerBuilder serverBuilder = NettyServerBuilder.forAddress(address)
+                .channelType(channelType)
+                .bossEventLoopGroup(bossGroup)
+                .workerEventLoopGroup(workerGroup);
+
+        switch (executorType) {
+            case CACHED -> {
+            }
+            case FIXED -> {
+                executor = Executors.newFixedThreadPool(executorThreads, newThreadFactory("grpc-executor-%d"));
+                serverBuilder.executor(executor);
+            }
+            case DIRECT -> serverBuilder.directExecutor();
+        }
+
+        if (maxConcurrentCallsPerConnection > 0) {
+            serverBuilder.maxConcurrentCallsPerConnection(maxConcurrentCallsPerConnection);
+        }
+        if (keepAliveTimeMs > 0) {
+            serverBuilder.keepAliveTime(keepAliveTimeMs, TimeUnit.MILLISECONDS);
+        }
+        if (keepAliveTimeoutMs > 0) {
+            serverBuilder.keepAliveTimeout(keepAliveTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+        if (permitKeepAliveTimeMs > 0) {
+            serverBuilder.permitKeepAliveTime(permitKeepAliveTimeMs, TimeUnit.MILLISECONDS);
+        }
+        serverBuilder.permitKeepAliveWithoutCalls(permitKeepAliveWithoutCalls);
+        if (maxConnectionIdleMs > 0) {
+            serverBuilder.maxConnectionIdle(maxConnectionIdleMs, TimeUnit.MILLISECONDS);
+        }
+        if (maxConnectionAgeMs > 0) {
+            serverBuilder.maxConnectionAge(maxConnectionAgeMs, TimeUnit.MILLISECONDS);
+        }
+        if (maxConnectionAgeGraceMs > 0) {
+            serverBuilder.maxConnectionAgeGrace(maxConnectionAgeGraceMs, TimeUnit.MILLISECONDS);
+        }
+
+        LOG.info("Netty server tuning: {}", this);
+
+        return serverBuilder;
+    }
+
+    /**
+     * Release the event-loop groups and executor; call after the server has terminated.
+     */
+    public void shutdown() {
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+            workerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "transport=" + transport + (useEpoll() ? " (epoll)" : " (nio)") + " boss-threads=" + bossThreads +
+                " worker-threads=" + workerThreads + " executor=" + executorType +
+                ((executorType == ExecutorType.FIXED) ? "(" + executorThreads + ")" : "") +
+                " max-concurrent-calls-per-connection=" + maxConcurrentCallsPerConnection + " keepalive-time=" + keepAliveTimeMs +
+                " keepalive-timeout=" + keepAliveTimeoutMs + " permit-keepalive-time=" + permitKeepAliveTimeMs +
+                " permit-keepalive-without-calls=" + permitKeepAliveWithoutCalls + " max-connection-idle=" + maxConnectionIdleMs +
+                " max-connection-age=" + maxConnectionAgeMs + " max-connection-age-grace=" + maxConnectionAgeGraceMs;
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private boolean useEpoll() {
+        return switch (transport) {
+            case AUTO -> Epoll.isAvailable();
+            case EPOLL -> {
+                Epoll.ensureAvailability();
+                yield true;
+            }
+            case NIO -> false;
+        };
+    }
+
+    private EventLoopGroup createEventLoopGroup(boolean epoll, int numThreads, String nameFormat) {
+        ThreadFactory threadFactory = newThreadFactory(nameFormat);
+
+        return epoll ? new EpollEventLoopGroup(numThreads, threadFactory) : new NioEventLoopGroup(numThreads, threadFactory);
+    }
+
+    private ThreadFactory newThreadFactory(String nameFormat) {
+        return new ThreadFactoryBuilder().setDaemon(true).setNameFormat(nameFormat).build();
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import org.opennms.poc.hs1384.census.TransportCensus;
+import org.opennms.poc.hs1384.journal.LifecycleEvent;
+import org.opennms.poc.hs1384.journal.LifecycleJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connect-Then-Fail engine built on a small number of selector event loops.  Every accepted connection is kept as
+ *  a registered channel (no thread per connection), SETTINGS + GOAWAY are sent on accept, and the periodic GOAWAY is
+ *  driven by a hashed timer wheel owned by each event loop.
+ *
+ * Anything the client sends is read and discarded; the connection is only closed when the client closes it, a write
+ *  fails, or the engine is shut down.
+ */
+public class NioConnectThenFailEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioConnectThenFailEngine.class);
+
+    private static final int ACCEPT_BACKLOG = 8192;
+    private static final long TIMER_TICK_MS = 100;
+    private static final int TIMER_TICKS_PER_WHEEL = 512;
+
+    private final InetSocketAddress bindAddress;
+    private final int numEventLoops;
+    private final long goAwayPeriodMs;
+    private final Http2Frame settingsFrame;
+    private final Http2Frame goAwayFrame;
+    private final TransportCensus census;
+    private final LifecycleJournal journal;
+
+    private final AtomicBoolean shutdown = new AtomicBoolean(false);
+    private final AtomicInteger openConnections = new AtomicInteger(0);
+
+    private ServerSocketChannel serverSocketChannel;
+    private EventLoop[] eventLoops;
+    private int nextEventLoop;
+
+    public NioConnectThenFailEngine(InetSocketAddress bindAddress, int numEventLoops, long goAwayPeriodMs, Http2Frame settingsFrame, Http2Frame goAwayFrame,
+                                    TransportCensus census, LifecycleJournal journal) {
+        this.bindAddress = bindAddress;
+        this.numEventLoops = Math.max(1, numEventLoops);
+        this.goAwayPeriodMs = goAwayPeriodMs;
+        this.settingsFrame = settingsFrame;
+        this.goAwayFrame = goAwayFrame;
+        this.census = census;
+        this.journal = journal;
+    }
+
+//========================================
+// Lifecycle
+//----------------------------------------
+
+    public void start() throws IOException {
+        eventLoops = new EventLoop[numEventLoops];
+        for (int cur = 0; cur < numEventLoops; cur++) {
+            eventLoops[cur] = new EventLoop(cur);
+        }
+
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.configureBlocking(false);
+        serverSocketChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverSocketChannel.bind(bindAddress, ACCEPT_BACKLOG);
+
+        // Event loop 0 also accepts; accepted channels are handed out round-robin
+        serverSocketChannel.register(eventLoops[0].selector, SelectionKey.OP_ACCEPT);
+
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.thread.start();
+        }
+
+        LOG.info("CTF NIO engine listening on {} with {} event loop(s)", bindAddress, numEventLoops);
+    }
+
+    public void shutdown() {
+        if (shutdown.compareAndSet(false, true)) {
+            for (EventLoop eventLoop : eventLoops) {
+                eventLoop.selector.wakeup();
+            }
+        }
+    }
+
+    public int getOpenConnectionCount() {
+        return openConnections.get();
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void accept() {
+        while (true) {
+            SocketChannel socketChannel;
+            try {
+                socketChannel = serverSocketChannel.accept();
+            } catch (IOException ioExc) {
+                // Commonly EMFILE - out of file descriptors; leave the rest in the backlog for the next select
+                LOG.error("CTF accept failed", ioExc);
+                return;
+            }
+
+            if (socketChannel == null) {
+                return;
+            }
+
+            EventLoop target = eventLoops[nextEventLoop];
+            nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+
+            target.handoff(socketChannel);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ioExc) {
+            LOG.debug("close failed", ioExc);
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<SocketChannel> handoffQueue = new ConcurrentLinkedQueue<>();
+        private final HashedTimerWheel<Connection> timerWheel;
+
+        // Only ever touched by this loop's thread, so they can be shared by all of its connections
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(4096);
+        private final Http2FrameBatchWriter connectBatch = new Http2FrameBatchWriter(settingsFrame, goAwayFrame);
+        private final Http2FrameBatchWriter goAwayBatch = new Http2FrameBatchWriter(goAwayFrame);
+
+        private EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "ctf-nio-loop-" + index);
+            this.timerWheel = new HashedTimerWheel<>(TIMER_TICK_MS, TimeUnit.MILLISECONDS, TIMER_TICKS_PER_WHEEL, System.nanoTime());
+        }
+
+        private void handoff(SocketChannel socketChannel) {
+            if (Thread.currentThread() == thread) {
+                register(socketChannel);
+            } else {
+                handoffQueue.add(socketChannel);
+                selector.wakeup();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (! shutdown.get()) {
+                try {
+                    selector.select(TIMER_TICK_MS);
+
+                    SocketChannel handedOff;
+                    while ((handedOff = handoffQueue.poll()) != null) {
+                        register(handedOff);
+                    }
+
+                    Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                    while (keyIterator.hasNext()) {
+                        SelectionKey key = keyIterator.next();
+                        keyIterator.remove();
+
+                        processKey(key);
+                    }
+
+                    timerWheel.expire(System.nanoTime(), this::periodicGoAway);
+                } catch (Exception exc) {
+                    LOG.error("CTF NIO event loop error", exc);
+                }
+            }
+
+            closeAll();
+        }
+
+        private void processKey(SelectionKey key) {
+            if (! key.isValid()) {
+                return;
+            }
+
+            if (key.isAcceptable()) {
+                accept();
+                return;
+            }
+
+            Connection connection = (Connection) key.attachment();
+            if (key.isReadable()) {
+                drainInput(connection);
+            }
+
+            if (key.isValid() && key.isWritable()) {
+                flushPending(connection);
+            }
+        }
+
+        private void register(SocketChannel socketChannel) {
+            Connection connection = new Connection(socketChannel);
+            try {
+                socketChannel.configureBlocking(false);
+                socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                connection.remoteAddress = socketChannel.getRemoteAddress();
+                connection.localAddress = socketChannel.getLocalAddress();
+                connection.key = socketChannel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (IOException ioExc) {
+                LOG.info("CTF failed to register accepted connection", ioExc);
+                closeQuietly(socketChannel);
+                return;
+            }
+
+            openConnections.incrementAndGet();
+            connection.censusEntry = census.opened(TransportCensus.hostOf(connection.remoteAddress), connection.localAddress, connection.remoteAddress);
+            LOG.debug("CTF accepted connection from {}", connection.remoteAddress);
+
+            if (write(connection, connectBatch)) {
+                recordGoAway(connection);
+                connection.goAwayTimeout = timerWheel.schedule(connection, goAwayPeriodMs, TimeUnit.MILLISECONDS, System.nanoTime());
+            }
+        }
+
+        private void periodicGoAway(Connection connection) {
+            LOG.debug("SENDING GOAWAY TO CLIENT ON SOCKET {}", connection.remoteAddress);
+
+            if (write(connection, goAwayBatch)) {
+                recordGoAway(connection);
+                connection.goAwayTimeout = timerWheel.schedule(connection, goAwayPeriodMs, TimeUnit.MILLISECONDS, System.nanoTime());
+            }
+        }
+
+        /**
+         * Write the frames in one gathering write without blocking; anything the socket does not take is copied aside
+         *  and flushed on OP_WRITE.
+         *
+         * @return true => connection is still open; false => connection was closed.
+         */
+        private boolean write(Connection connection, Http2FrameBatchWriter batch) {
+            try {
+                if (connection.pendingWrite == null) {
+                    batch.write(connection.channel);
+                } else {
+                    batch.reset();
+                }
+
+                if (batch.hasRemaining()) {
+                    connection.queue(batch.copyRemaining());
+                    connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+
+                return true;
+            } catch (IOException ioExc) {
+                LOG.debug("CTF write to {} failed", connection.remoteAddress, ioExc);
+                close(connection);
+                return false;
+            }
+        }
+
+        private void recordGoAway(Connection connection) {
+            journal.record(LifecycleEvent.GOAWAY_SENT, connection.censusEntry.getId(),
+                    LifecycleJournal.portOf(connection.localAddress), LifecycleJournal.portOf(connection.remoteAddress), 0, null);
+        }
+
+        private void flushPending(Connection connection) {
+            try {
+                connection.channel.write(connection.pendingWrite);
+                if (! connection.pendingWrite.hasRemaining()) {
+                    connection.pendingWrite = null;
+                    connection.key.interestOps(SelectionKey.OP_READ);
+                }
+            } catch (IOException ioExc) {
+                LOG.debug("CTF write to {} failed", connection.remoteAddress, ioExc);
+                close(connection);
+            }
+        }
+
+        private void drainInput(Connection connection) {
+            try {
+                int count;
+                do {
+                    readBuffer.clear();
+                    count = connection.channel.read(readBuffer);
+                } while (count > 0);
+
+                if (count < 0) {
+                    LOG.debug("CTF connection closed by {}", connection.remoteAddress);
+                    close(connection);
+                }
+            } catch (IOException ioExc) {
+                LOG.debug("CTF read from {} failed", connection.remoteAddress, ioExc);
+                close(connection);
+            }
+        }
+
+        private void close(Connection connection) {
+            if (connection.goAwayTimeout != null) {
+                connection.goAwayTimeout.cancel();
+                connection.goAwayTimeout = null;
+            }
+
+            if (connection.channel.isOpen()) {
+                closeQuietly(connection.channel);
+                openConnections.decrementAndGet();
+            }
+
+            if (connection.censusEntry != null) {
+                connection.censusEntry.closed();
+            }
+        }
+
+        private void closeAll() {
+            // The connections are all closed below; their GOAWAY timeouts must not outlive them
+            timerWheel.stop();
+
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection connection) {
+                    close(connection);
+                }
+            }
+
+            if (this == eventLoops[0]) {
+                closeQuietly(serverSocketChannel);
+            }
+            closeQuietly(selector);
+
+            LOG.info("CTF NIO event loop {} stopped", thread.getName());
+        }
+    }
+
+    private static final class Connection {
+        private final SocketChannel channel;
+        private SocketAddress remoteAddress;
+        private SocketAddress localAddress;
+        private SelectionKey key;
+        private ByteBuffer pendingWrite;
+        private HashedTimerWheel.Timeout<Connection> goAwayTimeout;
+        private TransportCensus.Transport censusEntry;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void queue(ByteBuffer remaining) {
+            ByteBuffer combined;
+            if (pendingWrite == null) {
+                combined = ByteBuffer.allocate(remaining.remaining());
+            } else {
+                combined = ByteBuffer.allocate(pendingWrite.remaining() + remaining.remaining());
+                combined.put(pendingWrite);
+            }
+            combined.put(remaining);
+            combined.flip();
+
+            pendingWrite = combined;
+        }
+    }
+}
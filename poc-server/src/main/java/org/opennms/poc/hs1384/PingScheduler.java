@@ -0,0 +1,199 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Single-thread scheduler driving the periodic application-level ping for every cloud-to-minion session, using one
+ *  hashed timer wheel instead of one scheduled task per stream.
+ *
+ * Each session's first ping is placed randomly within the period, and every following ping is jittered, so sessions
+ *  that connected together do not ping in synchronized bursts.  Closed sessions are dropped lazily the next time
+ *  their ping comes due, so no cross-thread cancellation is needed.
+ */
+public class PingScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PingScheduler.class);
+
+    private static final long TICK_MS = 10;
+    private static final int TICKS_PER_WHEEL = 1024;
+    private static final long REPORT_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final long periodMs;
+    private final double jitter;
+    private final Consumer<MinionSession> pingSender;
+
+    private final Queue<MinionSession> added = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean shutdown = new AtomicBoolean(false);
+
+    private final AtomicLong scheduledCount = new AtomicLong(0);
+    private final AtomicLong pingCount = new AtomicLong(0);
+    private final AtomicLong dispatchNanos = new AtomicLong(0);
+    private volatile double lastPingsPerSecond;
+
+    private Thread thread;
+
+    /**
+     * @param periodMs ping period for each session.
+     * @param jitter fraction of the period each ping may move earlier or later, from 0 to 1.
+     * @param pingSender sends one ping on the given session; called on the scheduler thread, so must not block.
+     */
+    public PingScheduler(long periodMs, double jitter, Consumer<MinionSession> pingSender) {
+        this.periodMs = periodMs;
+        this.jitter = Math.max(0.0, Math.min(1.0, jitter));
+        this.pingSender = pingSender;
+    }
+
+//========================================
+// Lifecycle
+//----------------------------------------
+
+    public void start() {
+        thread = new Thread(this::run, "ping-scheduler");
+        thread.setDaemon(true);
+        thread.start();
+
+        LOG.info("Started ping scheduler: period={}ms jitter={}", periodMs, jitter);
+    }
+
+    public void shutdown() {
+        shutdown.set(true);
+    }
+
+//========================================
+// Interface
+//----------------------------------------
+
+    /**
+     * Start pinging the session; safe to call from any thread.
+     */
+    public void schedule(MinionSession session) {
+        added.add(session);
+    }
+
+    /**
+     * @return counters, plus the estimated sustainable ping rate derived from the time spent dispatching pings.
+     */
+    public Map<String, Object> getStats() {
+        long pings = pingCount.get();
+        long nanos = dispatchNanos.get();
+        long nanosPerPing = (pings == 0) ? 0 : nanos / pings;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("scheduledSessions", scheduledCount.get());
+        stats.put("pings", pings);
+        stats.put("pingsPerSecond", lastPingsPerSecond);
+        stats.put("dispatchNanosPerPing", nanosPerPing);
+        stats.put("sustainablePingsPerSecond", (nanosPerPing == 0) ? 0 : TimeUnit.SECONDS.toNanos(1) / nanosPerPing);
+
+        return stats;
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private void run() {
+        HashedTimerWheel<MinionSession> wheel =
+                new HashedTimerWheel<>(TICK_MS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL, System.nanoTime());
+
+        long reportStart = System.nanoTime();
+        long reportStartPings = 0;
+
+        while (! shutdown.get()) {
+            try {
+                Thread.sleep(TICK_MS);
+            } catch (InterruptedException intExc) {
+                LOG.debug("ping scheduler interrupted", intExc);
+                return;
+            }
+
+            long now = System.nanoTime();
+
+            MinionSession session;
+            while ((session = added.poll()) != null) {
+                scheduledCount.incrementAndGet();
+                wheel.schedule(session, ThreadLocalRandom.current().nextLong(periodMs), TimeUnit.MILLISECONDS, now);
+            }
+
+            int fired = wheel.expire(now, expired -> firePing(wheel, expired, now));
+            if (fired > 0) {
+                dispatchNanos.addAndGet(System.nanoTime() - now);
+            }
+
+            if (now - reportStart >= REPORT_PERIOD_NANOS) {
+                long pings = pingCount.get();
+                lastPingsPerSecond = (pings - reportStartPings) / ((now - reportStart) / 1e9);
+
+                LOG.info("Ping scheduler: {} session(s), {} pings/s, stats={}", wheel.size(), String.format("%.1f", lastPingsPerSecond), getStats());
+
+                reportStart = now;
+                reportStartPings = pings;
+            }
+        }
+    }
+
+    private void firePing(HashedTimerWheel<MinionSession> wheel, MinionSession session, long now) {
+        if (session.isClosed()) {
+            scheduledCount.decrementAndGet();
+            return;
+        }
+
+        try {
+            pingSender.accept(session);
+            pingCount.incrementAndGet();
+        } catch (RuntimeException rtExc) {
+            LOG.warn("ping to minion {} failed", session.getMinionId(), rtExc);
+        }
+
+        wheel.schedule(session, nextDelay(), TimeUnit.MILLISECONDS, now);
+    }
+
+    private long nextDelay() {
+        long maxShift = (long) (periodMs * jitter);
+        if (maxShift == 0) {
+            return periodMs;
+        }
+
+        return periodMs + ThreadLocalRandom.current().nextLong(-maxShift, maxShift + 1);
+    }
+}
@@ -29,24 +29,129 @@
 
 package org.opennms.poc.hs1384;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.Empty;
+import com.google.protobuf.MessageLite;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import org.opennms.poc.hs1384.grpc.CloudToMinionAck;
+import org.opennms.poc.hs1384.grpc.CloudToMinionMessage;
 import org.opennms.poc.hs1384.grpc.TestRequest;
+import org.opennms.poc.hs1384.grpc.TestRequestBatch;
 import org.opennms.poc.hs1384.grpc.TestResponse;
 import org.opennms.poc.hs1384.grpc.TestServiceGrpc;
+import org.opennms.poc.hs1384.metrics.StreamMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-// import java.util.concurrent.ScheduledExecutorService;
-// import java.util.concurrent.ScheduledThreadPoolExecutor;
-// import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Every streaming path is flow controlled: minion-to-cloud messages are only requested as fast as the worker threads
+ *  handle them (see {@link FlowControlledInboundObserver}), and cloud-to-minion pushes are only written while the
+ *  stream is ready (see {@link MinionSession}).
+ */
 @Component
 public class TestService extends TestServiceGrpc.TestServiceImplBase {
 
-    // private ScheduledExecutorService scheduledExecutorService = new ScheduledThreadPoolExecutor(10);
+    private static final Logger LOG = LoggerFactory.getLogger(TestService.class);
+
+    @Autowired
+    private MinionSessionRegistry minionSessionRegistry;
+
+    @Value("${minion-to-cloud.inbound-window:16}")
+    private int inboundWindow = 16;
+
+    @Value("${minion-to-cloud.threads:4}")
+    private int numThreads = 4;
+
+    @Value("${minion-to-cloud.zero-copy:true}")
+    private boolean zeroCopy = true;
+
+    @Value("${stream-log.sample-rate:0}")
+    private int streamLogSampleRate = 0;
+
+    @Value("${stream-log.summary-period:10000}")
+    private long streamLogSummaryPeriod = 10_000;
+
+    private final ZeroCopyMessageMarshaller<TestRequest> requestMarshaller = new ZeroCopyMessageMarshaller<>(TestRequest.getDefaultInstance());
+    private final ZeroCopyMessageMarshaller<TestRequestBatch> batchMarshaller = new ZeroCopyMessageMarshaller<>(TestRequestBatch.getDefaultInstance());
+
+    private ExecutorService minionToCloudExecutor;
+    private StreamMetrics streamMetrics;
+
+    @PostConstruct
+    public void init() {
+        streamMetrics = new StreamMetrics(streamLogSampleRate, streamLogSummaryPeriod);
+
+        // Each call has at most one drain task queued or running, so the task queue is bounded by the number of calls
+        minionToCloudExecutor = Executors.newFixedThreadPool(
+                numThreads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("minion-to-cloud-%d").build()
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        FlowControlledInboundObserver.discardAll(minionToCloudExecutor.shutdownNow());
+
+        streamMetrics.close();
+        LOG.info("STREAMS at shutdown: {}", streamMetrics);
+    }
+
+    public StreamMetrics getStreamMetrics() {
+        return streamMetrics;
+    }
+
+    /**
+     * Takes effect at the next {@link #getServiceDefinition}.
+     */
+    public void setZeroCopy(boolean zeroCopy) {
+        this.zeroCopy = zeroCopy;
+    }
+
+    /**
+     * The service to register: {@link #bindService} with the minion-to-cloud methods re-bound with
+     *  {@link ZeroCopyMessageMarshaller}s, unless zero-copy is disabled.
+     */
+    public ServerServiceDefinition getServiceDefinition() {
+        ServerServiceDefinition generated = bindService();
+        if (! zeroCopy) {
+            return generated;
+        }
+
+        ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(generated.getServiceDescriptor().getName());
+        for (ServerMethodDefinition<?, ?> method : generated.getMethods()) {
+            String methodName = method.getMethodDescriptor().getFullMethodName();
+
+            if (methodName.equals(TestServiceGrpc.getMinionToCloudMessagesMethod().getFullMethodName())) {
+                builder.addMethod(withRequestMarshaller(TestServiceGrpc.getMinionToCloudMessagesMethod(), method, requestMarshaller));
+            } else if (methodName.equals(TestServiceGrpc.getMinionToCloudBatchesMethod().getFullMethodName())) {
+                builder.addMethod(withRequestMarshaller(TestServiceGrpc.getMinionToCloudBatchesMethod(), method, batchMarshaller));
+            } else {
+                builder.addMethod(method);
+            }
+        }
+
+        return builder.build();
+    }
 
     @Override
     public void request(TestRequest request, StreamObserver<TestResponse> responseObserver) {
+        // Nobody is waiting for the response
+        if (((ServerCallStreamObserver<TestResponse>) responseObserver).isCancelled()) {
+            return;
+        }
+
         TestResponse testResponse = TestResponse.newBuilder().setResponse("RESPONSE TO " + request.getQuery()).build();
 
         responseObserver.onNext(testResponse);
@@ -55,15 +160,195 @@ public class TestService extends TestServiceGrpc.TestServiceImplBase {
 
     @Override
     public StreamObserver<TestRequest> minionToCloudMessages(StreamObserver<Empty> responseObserver) {
-        // this.scheduledExecutorService.scheduleAtFixedRate(() -> this.sendPeriodicPing(responseObserver), 1_000, 1_000, TimeUnit.MILLISECONDS);
-        return new LoggingStreamObserver<TestRequest>("MINION-TO-CLOUD");
+        return new FlowControlledInboundObserver<>(
+                (ServerCallStreamObserver<Empty>) responseObserver,
+                new ReleasingObserver<>(new EmptyResponder<>(streamMetrics.<TestRequest>observer("MINION-TO-CLOUD"), responseObserver), requestMarshaller),
+                inboundWindow,
+                minionToCloudExecutor,
+                requestMarshaller::release
+        );
+    }
+
+    @Override
+    public StreamObserver<TestRequestBatch> minionToCloudBatches(StreamObserver<Empty> responseObserver) {
+        return new FlowControlledInboundObserver<>(
+                (ServerCallStreamObserver<Empty>) responseObserver,
+                new ReleasingObserver<>(
+                        new EmptyResponder<>(new TestRequestBatchUnpacker(streamMetrics.<TestRequest>observer("MINION-TO-CLOUD")), responseObserver),
+                        batchMarshaller),
+                inboundWindow,
+                minionToCloudExecutor,
+                batchMarshaller::release
+        );
+    }
+
+    @Override
+    public StreamObserver<CloudToMinionAck> cloudToMinionMessages(StreamObserver<CloudToMinionMessage> responseObserver) {
+        return new CloudToMinionAckObserver((ServerCallStreamObserver<CloudToMinionMessage>) responseObserver);
     }
 
 //========================================
 // Internals
 //----------------------------------------
 
-    // private void sendPeriodicPing() {
-    //
-    // }
+    @SuppressWarnings("unchecked")
+    private static <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> withRequestMarshaller(
+            MethodDescriptor<ReqT, RespT> descriptor, ServerMethodDefinition<?, ?> generated, MethodDescriptor.Marshaller<ReqT> requestMarshaller) {
+
+        return ServerMethodDefinition.create(
+                descriptor.toBuilder(requestMarshaller, descriptor.getResponseMarshaller()).build(),
+                ((ServerMethodDefinition<ReqT, RespT>) generated).getServerCallHandler()
+        );
+    }
+
+    /**
+     * Returns each message's buffers to the transport once the message has been handled.
+     */
+    private static class ReleasingObserver<T extends MessageLite> implements StreamObserver<T> {
+        private final StreamObserver<T> delegate;
+        private final ZeroCopyMessageMarshaller<T> marshaller;
+
+        private ReleasingObserver(StreamObserver<T> delegate, ZeroCopyMessageMarshaller<T> marshaller) {
+            this.delegate = delegate;
+            this.marshaller = marshaller;
+        }
+
+        @Override
+        public void onNext(T value) {
+            try {
+                delegate.onNext(value);
+            } finally {
+                marshaller.release(value);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            delegate.onError(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            delegate.onCompleted();
+        }
+    }
+
+    /**
+     * Feeds every message of each batch to the same per-message handling as minionToCloudMessages.
+     */
+    private static class TestRequestBatchUnpacker implements StreamObserver<TestRequestBatch> {
+        private final StreamObserver<TestRequest> delegate;
+
+        private TestRequestBatchUnpacker(StreamObserver<TestRequest> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onNext(TestRequestBatch batch) {
+            for (TestRequest request : batch.getRequestsList()) {
+                delegate.onNext(request);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            delegate.onError(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            delegate.onCompleted();
+        }
+    }
+
+    /**
+     * Answers a client stream with one Empty once the client has completed it.
+     */
+    private static class EmptyResponder<T> implements StreamObserver<T> {
+        private final StreamObserver<T> delegate;
+        private final StreamObserver<Empty> responseObserver;
+
+        private EmptyResponder(StreamObserver<T> delegate, StreamObserver<Empty> responseObserver) {
+            this.delegate = delegate;
+            this.responseObserver = responseObserver;
+        }
+
+        @Override
+        public void onNext(T value) {
+            delegate.onNext(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            delegate.onError(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            delegate.onCompleted();
+
+            responseObserver.onNext(Empty.getDefaultInstance());
+            responseObserver.onCompleted();
+        }
+    }
+
+    /**
+     * Inbound side of a cloud-to-minion stream: the first ack registers the session, the rest feed push latency.
+     */
+    private class CloudToMinionAckObserver implements StreamObserver<CloudToMinionAck> {
+        private final ServerCallStreamObserver<CloudToMinionMessage> outbound;
+        private volatile MinionSession session;
+
+        private CloudToMinionAckObserver(ServerCallStreamObserver<CloudToMinionMessage> outbound) {
+            this.outbound = outbound;
+
+            // Only settable before the service method returns, so it forwards to the session registered later
+            outbound.setOnReadyHandler(this::onReady);
+        }
+
+        private void onReady() {
+            MinionSession current = session;
+            if (current != null) {
+                current.onReady();
+            }
+        }
+
+        @Override
+        public void onNext(CloudToMinionAck ack) {
+            if (session == null) {
+                if (ack.getMinionId().isEmpty()) {
+                    LOG.warn("CLOUD-TO-MINION stream opened without a minion id; ignoring {}", ack);
+                    return;
+                }
+
+                session = minionSessionRegistry.register(ack.getMinionId(), outbound);
+            } else if (ack.getSequence() != 0) {
+                minionSessionRegistry.recordAck(ack);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            LOG.debug("CLOUD-TO-MINION stream error", t);
+            closeSession();
+        }
+
+        @Override
+        public void onCompleted() {
+            if (session != null) {
+                // Completes the outbound stream from the session's drain task, serialized with any pushes
+                session.close();
+            } else {
+                outbound.onCompleted();
+            }
+
+            closeSession();
+        }
+
+        private void closeSession() {
+            if (session != null) {
+                minionSessionRegistry.unregister(session);
+            }
+        }
+    }
 }
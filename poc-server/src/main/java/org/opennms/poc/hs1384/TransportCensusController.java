@@ -0,0 +1,64 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import org.opennms.poc.hs1384.census.TransportCensus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * HTTP view of the CTF server's transport census:
+ *
+ * <pre>
+ *     curl http://localhost:8080/census
+ *     curl http://localhost:8080/census/csv
+ * </pre>
+ */
+@RestController
+@RequestMapping("/census")
+public class TransportCensusController {
+
+    @Autowired
+    private TransportCensusService transportCensusService;
+
+    @GetMapping
+    public Map<String, Object> census() {
+        return transportCensusService.getCensus().snapshot().toMap();
+    }
+
+    @GetMapping(value = "/csv", produces = "text/csv")
+    public String csv() {
+        return TransportCensus.Snapshot.csvHeader() + "\n" + transportCensusService.getCensus().snapshot().toCsvRow() + "\n";
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import org.opennms.poc.hs1384.census.TransportCensus;
+import org.opennms.poc.hs1384.census.TransportCensusCsvWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Census of the CTF server's connections, served by {@link TransportCensusController} and optionally appended to a CSV
+ *  file every census.csv-period ms.
+ */
+@Component
+public class TransportCensusService {
+
+    @Value("${census.csv-file:}")
+    private String csvFile = "";
+
+    @Value("${census.csv-period:1000}")
+    private long csvPeriod = 1_000;
+
+    private final TransportCensus census = new TransportCensus("ctf-server");
+
+    private TransportCensusCsvWriter csvWriter;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (! csvFile.isEmpty()) {
+            csvWriter = new TransportCensusCsvWriter(census, Path.of(csvFile), csvPeriod);
+            csvWriter.start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (csvWriter != null) {
+            csvWriter.shutdown();
+        }
+    }
+
+    public TransportCensus getCensus() {
+        return census;
+    }
+}
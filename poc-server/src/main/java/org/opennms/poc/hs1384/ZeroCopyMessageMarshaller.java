@@ -0,0 +1,210 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.Detachable;
+import io.grpc.HasByteBuffer;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.netty.buffer.ByteBuf;
+import io.grpc.netty.shaded.io.netty.buffer.PooledByteBufAllocator;
+import io.grpc.protobuf.lite.ProtoLiteUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Protobuf marshaller that parses without copying the message out of the transport's (Netty's pooled) buffers.  The
+ *  buffers are detached from the call, wrapped with {@link UnsafeByteOperations}, and parsed with aliasing, so
+ *  {@code bytes} fields of the message are views of the buffers rather than copies.  Runs of tiny buffers are merged
+ *  into one buffer from Netty's pooled direct allocator, owned by the message like the transport's buffers.
+ *
+ * The buffers therefore stay allocated until {@link #release} is called with the message, which must happen exactly
+ *  once, after the message was handled and nothing refers to its {@code bytes} fields any more.  When the transport
+ *  cannot expose its buffers, the message is parsed (copied) by the standard marshaller and release is a no-op.
+ */
+public class ZeroCopyMessageMarshaller<T extends MessageLite> implements MethodDescriptor.Marshaller<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ZeroCopyMessageMarshaller.class);
+
+    /**
+     * Adjacent ByteStrings whose combined size is below this are concatenated by copying (RopeByteString's own
+     *  threshold).  The copy is a heap array, and a single heap chunk makes protobuf parse the whole rope through its
+     *  copying stream decoder, so such runs are merged into a pooled direct buffer here instead.
+     */
+    private static final int ROPE_COPY_THRESHOLD = 128;
+
+    private final Parser<T> parser;
+    private final MethodDescriptor.Marshaller<T> fallback;
+
+    private final Map<T, Retained> retainedBuffers = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final AtomicLong zeroCopyCount = new AtomicLong(0);
+    private final AtomicLong copiedCount = new AtomicLong(0);
+
+    @SuppressWarnings("unchecked")
+    public ZeroCopyMessageMarshaller(T defaultInstance) {
+        this.parser = (Parser<T>) defaultInstance.getParserForType();
+        this.fallback = ProtoLiteUtils.marshaller(defaultInstance);
+    }
+
+    public long getZeroCopyCount() {
+        return zeroCopyCount.get();
+    }
+
+    public long getCopiedCount() {
+        return copiedCount.get();
+    }
+
+    public int getRetainedCount() {
+        return retainedBuffers.size();
+    }
+
+    @Override
+    public InputStream stream(T value) {
+        return fallback.stream(value);
+    }
+
+    @Override
+    public T parse(InputStream stream) {
+        if ((stream instanceof Detachable detachable) && (stream instanceof HasByteBuffer hasByteBuffer) && hasByteBuffer.byteBufferSupported()) {
+            Retained retained = new Retained(detachable.detach(), new ArrayList<>());
+            try {
+                T message = parseAliased(retained);
+                retainedBuffers.put(message, retained);
+                zeroCopyCount.incrementAndGet();
+
+                return message;
+            } catch (IOException | RuntimeException exc) {
+                retained.release();
+                throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence").withCause(exc).asRuntimeException();
+            }
+        }
+
+        copiedCount.incrementAndGet();
+        return fallback.parse(stream);
+    }
+
+    /**
+     * Return the message's buffers to the transport's pool.
+     */
+    public void release(T message) {
+        Retained retained = retainedBuffers.remove(message);
+        if (retained != null) {
+            retained.release();
+        }
+    }
+
+//========================================
+// Internals
+//----------------------------------------
+
+    private T parseAliased(Retained retained) throws IOException {
+        InputStream detached = retained.detached;
+        HasByteBuffer buffers = (HasByteBuffer) detached;
+
+        // Without the mark, skipping past a buffer returns it to the pool while the chunk still refers to it
+        detached.mark(detached.available());
+
+        List<ByteBuffer> chunks = new ArrayList<>();
+        while (detached.available() > 0) {
+            ByteBuffer buffer = buffers.getByteBuffer();
+            int length = buffer.remaining();
+
+            chunks.add(buffer);
+            detached.skip(length);
+        }
+        detached.reset();
+
+        List<ByteString> rope = new ArrayList<>(chunks.size());
+        int start = 0;
+        while (start < chunks.size()) {
+            int end = start + 1;
+            while ((chunks.get(end - 1).remaining() < ROPE_COPY_THRESHOLD) && (end < chunks.size()) && (chunks.get(end).remaining() < ROPE_COPY_THRESHOLD)) {
+                end++;
+            }
+
+            rope.add(UnsafeByteOperations.unsafeWrap((end - start == 1) ? chunks.get(start) : mergeDirect(chunks.subList(start, end), retained)));
+            start = end;
+        }
+
+        // Concatenation builds a rope over the chunks; apart from the merged runs nothing is copied
+        CodedInputStream input = ByteString.copyFrom(rope).newCodedInput();
+        input.enableAliasing(true);
+        input.setSizeLimit(Integer.MAX_VALUE);
+
+        return parser.parseFrom(input);
+    }
+
+    /**
+     * @return a view of a pooled direct buffer holding the run; the buffer is released with the message.
+     */
+    private static ByteBuffer mergeDirect(List<ByteBuffer> run, Retained retained) {
+        int length = 0;
+        for (ByteBuffer buffer : run) {
+            length += buffer.remaining();
+        }
+
+        ByteBuf merged = PooledByteBufAllocator.DEFAULT.directBuffer(length, length);
+        retained.merged.add(merged);
+        for (ByteBuffer buffer : run) {
+            merged.writeBytes(buffer.duplicate());
+        }
+
+        return merged.nioBuffer();
+    }
+
+    /**
+     * Everything a zero-copy message refers to: the transport's buffers and the merged runs.
+     */
+    private record Retained(InputStream detached, List<ByteBuf> merged) {
+        private void release() {
+            merged.forEach(ByteBuf::release);
+            try {
+                detached.close();
+            } catch (IOException ioExc) {
+                LOG.debug("Failed to release message buffers", ioExc);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2023 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2023 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *
+ */
+
+package org.opennms.poc.hs1384;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the wheel with explicit times: 10ms ticks, 8 ticks per rotation (80ms), started at 0.
+ */
+public class HashedTimerWheelTest {
+
+    private static final long TICK_MS = 10;
+    private static final int TICKS_PER_WHEEL = 8;
+
+    private HashedTimerWheel<String> wheel;
+    private List<String> expired;
+
+    @BeforeEach
+    public void setUp() {
+        wheel = new HashedTimerWheel<>(TICK_MS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL, 0);
+        expired = new ArrayList<>();
+    }
+
+    @Test
+    public void zeroDelayOnATickBoundaryExpiresAtThatTick() {
+        wheel.schedule("a", 0, TimeUnit.MILLISECONDS, 0);
+
+        assertEquals(1, wheel.expire(0, expired::add));
+        assertEquals(List.of("a"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void zeroDelayWithinATickExpiresAtTheNextTick() {
+        wheel.schedule("a", 0, TimeUnit.MILLISECONDS, millis(5));
+
+        assertEquals(0, wheel.expire(millis(9), expired::add));
+        assertEquals(1, wheel.expire(millis(10), expired::add));
+        assertEquals(List.of("a"), expired);
+    }
+
+    @Test
+    public void subTickDelayNeverExpiresEarly() {
+        wheel.schedule("a", 3, TimeUnit.MILLISECONDS, 0);
+
+        assertEquals(0, wheel.expire(0, expired::add));
+        assertEquals(0, wheel.expire(millis(9), expired::add));
+        assertEquals(1, wheel.expire(millis(10), expired::add));
+    }
+
+    @Test
+    public void negativeDelayIsTreatedAsZero() {
+        wheel.schedule("a", -50, TimeUnit.MILLISECONDS, 0);
+
+        assertEquals(1, wheel.expire(0, expired::add));
+    }
+
+    @Test
+    public void zeroDelayScheduledByTheHandlerIsNotExpiredByTheSameCall() {
+        wheel.schedule("a", 0, TimeUnit.MILLISECONDS, 0);
+
+        // Several ticks elapsed at once: the rescheduled timeout must land after all of them
+        assertEquals(1, wheel.expire(millis(50), task -> {
+            expired.add(task);
+            wheel.schedule(task + "'", 0, TimeUnit.MILLISECONDS, millis(50));
+        }));
+        assertEquals(List.of("a"), expired);
+        assertEquals(1, wheel.size());
+
+        assertEquals(1, wheel.expire(millis(60), expired::add));
+        assertEquals(List.of("a", "a'"), expired);
+    }
+
+    @Test
+    public void delayLongerThanOneRotationWaitsOutTheRemainingRounds() {
+        // 250ms is tick 25: three full rotations of 8 ticks, then 1 more tick
+        wheel.schedule("a", 250, TimeUnit.MILLISECONDS, 0);
+
+        long firedAt = -1;
+        for (long now = 0; now <= millis(400); now += millis(TICK_MS)) {
+            if (wheel.expire(now, expired::add) > 0) {
+                firedAt = now;
+                break;
+            }
+        }
+
+        assertEquals(millis(250), firedAt);
+    }
+
+    @Test
+    public void delayLongerThanOneRotationSurvivesALateExpire() {
+        wheel.schedule("a", 250, TimeUnit.MILLISECONDS, 0);
+        wheel.schedule("b", 20, TimeUnit.MILLISECONDS, 0);
+
+        assertEquals(1, wheel.expire(millis(245), expired::add));
+        assertEquals(List.of("b"), expired);
+
+        assertEquals(1, wheel.expire(millis(1_000), expired::add));
+        assertEquals(List.of("b", "a"), expired);
+    }
+
+    @Test
+    public void timeoutsSharingABucketExpireInTheirOwnRounds() {
+        // Ticks 2, 10 and 18 all map to bucket 2
+        wheel.schedule("first", 20, TimeUnit.MILLISECONDS, 0);
+        wheel.schedule("second", 100, TimeUnit.MILLISECONDS, 0);
+        wheel.schedule("third", 180, TimeUnit.MILLISECONDS, 0);
+
+        assertEquals(1, wheel.expire(millis(99), expired::add));
+        assertEquals(1, wheel.expire(millis(179), expired::add));
+        assertEquals(1, wheel.expire(millis(180), expired::add));
+        assertEquals(List.of("first", "second", "third"), expired);
+    }
+
+    @Test
+    public void cancelledTimeoutNeverExpires() {
+        HashedTimerWheel.Timeout<String> cancelled = wheel.schedule("cancelled", 20, TimeUnit.MILLISECONDS, 0);
+        wheel.schedule("kept", 20, TimeUnit.MILLISECONDS, 0);
+
+        assertTrue(cancelled.isPending());
+        cancelled.cancel();
+        cancelled.cancel();
+
+        assertFalse(cancelled.isPending());
+        assertEquals(1, wheel.size());
+        assertEquals(1, wheel.expire(millis(100), expired::add));
+        assertEquals(List.of("kept"), expired);
+    }
+
+    @Test
+    public void stopReturnsThePendingTimeoutsAndRefusesNewOnes() {
+        HashedTimerWheel.Timeout<String> soon = wheel.schedule("soon", 10, TimeUnit.MILLISECONDS, 0);
+        HashedTimerWheel.Timeout<String> later = wheel.schedule("later", 500, TimeUnit.MILLISECONDS, 0);
+        wheel.schedule("cancelled", 30, TimeUnit.MILLISECONDS, 0).cancel();
+
+        List<HashedTimerWheel.Timeout<String>> pending = wheel.stop();
+
+        assertEquals(2, pending.size());
+        assertTrue(pending.contains(soon));
+        assertTrue(pending.contains(later));
+        assertFalse(soon.isPending());
+        assertFalse(later.isPending());
+        assertEquals(0, wheel.size());
+
+        assertEquals(0, wheel.expire(millis(1_000), expired::add));
+        assertThrows(IllegalStateException.class, () -> wheel.schedule("new", 10, TimeUnit.MILLISECONDS, millis(1_000)));
+    }
+
+    @Test
+    public void nonPositiveTickIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimerWheel<String>(0, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL, 0));
+    }
+
+    private static long millis(long ms) {
+        return TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+}